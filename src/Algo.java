@@ -2,20 +2,63 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntBiFunction;
+import java.util.function.ToIntFunction;
 
 /**
- * The Algo class contains five search algorithms:
- * BFS, DFID, A*, IDA*, DFBnB
+ * The Algo class contains the search algorithms:
+ * BFS, DFID, A*, IDA*, Fringe Search, DFBnB (also in parallel),
+ * Partial Expansion A*, Lazy A*, Hash Distributed A* (several processes), Anytime Weighted A* (for large boards),
+ * real time search (LRTA*), bitstate BFS and DFS,
+ * Bidirectional Uniform Cost Search, MM (bidirectional heuristic search), solution tables (small boards)
+ * Perimeter A* (many start boards toward one goal board), a portfolio that races several of them
+ * and an automatic choice of one of them by the features of the instance
  *
  * @author Itai Lashover
  */
 public class Algo {
 
-    static int numOfStates = 0;
-    static int cost = 0;
+    int numOfStates = 0;
+    int cost = 0;
+    String details = null;   // more information about the run, written to the file if not null
     String algo;
     boolean withTime;
     boolean withOpen;
+    double weight = 3;
+    int nodeLimit = 1_000_000;
+    int radius = 60;
+    SolutionCache cache = null;
+    String[] portfolio = null;      // null for the first entries of the default portfolio, one per processor
+    final static String[] defaultPortfolio =
+            {"AStar:MAX", "IDAStar:MAX", "AStar:MANHATTAN", "MM:MANHATTAN", "DFBnB:MAX", "IDAStar:MANHATTAN"};
+    volatile boolean cancelled = false;
+    volatile Algo[] racers = null;  // the algorithms that the Portfolio Algorithm runs
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean greedyBound = true;
+    int processes = 2;
+    String[] workers = null;
+    PuzzleStateAlgo.Heuristic heuristic = PuzzleStateAlgo.Heuristic.MANHATTAN;
+    int lookahead = 64;
+    long moveMillis = 0;
+    MoveListener moveListener = null;
+    int bitstateBits = 29;      // 64MB
+    int bitstateHashes = 3;
+    int bitstateDepth = 10_000;
+    // the heuristic values learned by the real time search, by dimensions, goal board and heuristic function
+    // (the most recently used goals, each up to LEARNED_BOARDS boards, so a server process does not grow forever)
+    final static int LEARNED_GOALS = 16;
+    final static int LEARNED_BOARDS = 1 << 20;
+    final static LinkedHashMap<String, Hashtable<PackedBoard, Integer>> learned =
+            new LinkedHashMap<String, Hashtable<PackedBoard, Integer>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Hashtable<PackedBoard, Integer>> eldest) {
+                    return size() > LEARNED_GOALS;
+                }
+            };
     final static String outputFilePath = "output.txt";
     File file;
 
@@ -33,7 +76,146 @@ public class Algo {
     }
 
     /**
-     * Runs the required algorithm from the start State and prints to the screen the desired values
+     * Setter for the weight of the heuristic function in the Anytime Weighted A* Algorithm
+     * @param weight - A number that is at least 1, the higher it is the faster the first solution is found
+     */
+    public void setWeight(double weight){
+        this.weight = weight;
+    }
+
+    /**
+     * Setter for the number of expansions the Anytime Weighted A* Algorithm may do after its first solution
+     * @param nodeLimit - The maximum number of expansions
+     */
+    public void setNodeLimit(int nodeLimit){
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Setter for the radius of the backward search from the goal board in the Perimeter A* Algorithm
+     * @param radius - The maximal cost of the boards that are kept (the larger it is the more memory it takes)
+     */
+    public void setRadius(int radius){
+        this.radius = radius;
+    }
+
+    /**
+     * Setter for the heuristic function of the States that the algorithms make from boards
+     * (Portfolio, Auto and the distributed A* workers)
+     * @param heuristic - The heuristic function
+     */
+    public void setHeuristic(PuzzleStateAlgo.Heuristic heuristic){
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Setter for the worker processes of the distributed A* Algorithm
+     * @param processes - The number of worker processes to start on this machine
+     * @param workers   - The "host:port" addresses of running workers (then processes is ignored),
+     *                    or null to start the worker processes
+     */
+    public void setWorkers(int processes, String... workers){
+        this.processes = processes;
+        this.workers = workers == null || workers.length == 0 ? null : workers;
+    }
+
+    /**
+     * Setter for the persistent cache of solved instances, the instances that are in the cache
+     * are answered without running the algorithm
+     * @param cache     - The cache, or null for no cache
+     * @param heuristic - The heuristic function of the States (a part of the key of the instances)
+     */
+    public void setCache(SolutionCache cache, PuzzleStateAlgo.Heuristic heuristic){
+        this.cache = cache;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Setter for the algorithms that race in the Portfolio Algorithm
+     * @param portfolio - Pairs of an algorithm (that finds the cheapest path) and a heuristic function,
+     *                    like "AStar:MAX" or "IDAStar:MANHATTAN" (by default the first entries of
+     *                    defaultPortfolio, one per processor and at least two)
+     */
+    public void setPortfolio(String... portfolio){
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Setter for the number of worker threads of the Parallel DFBnB Algorithm
+     * @param threads - The number of threads (by default the number of processors)
+     */
+    public void setThreads(int threads){
+        this.threads = threads;
+    }
+
+    /**
+     * Gets the moves of the real time search, as soon as each of them is committed
+     */
+    public interface MoveListener {
+        /**
+         * @param step - The move, like "5L" or "3&4U"
+         * @param cost - The cost of the path so far, with this move
+         */
+        void move(String step, int cost);
+    }
+
+    /**
+     * Setter for the budget of every move of the real time search (LRTA*)
+     * @param lookahead  - The maximal number of States expanded before a move is committed
+     * @param moveMillis - The maximal time (ms) before a move is committed, or 0 for no time limit
+     */
+    public void setLookahead(int lookahead, long moveMillis){
+        this.lookahead = Math.max(1, lookahead);
+        this.moveMillis = moveMillis;
+    }
+
+    /**
+     * Setter for the listener of the moves of the real time search
+     * @param moveListener - The listener, or null
+     */
+    public void setMoveListener(MoveListener moveListener){
+        this.moveListener = moveListener;
+    }
+
+    /**
+     * Setter for the size of the bit array of the bitstate searches (see BitstateTable)
+     * @param log2Bits - The log2 of the number of bits
+     * @param hashes   - The number of bits of every board
+     * @param depth    - The maximal number of moves of the paths of the bitstate DFS
+     */
+    public void setBitstate(int log2Bits, int hashes, int depth){
+        this.bitstateBits = log2Bits;
+        this.bitstateHashes = hashes;
+        this.bitstateDepth = depth;
+    }
+
+    /**
+     * Setter for the first bound of the Parallel DFBnB Algorithm
+     * @param greedyBound - if true the bound starts at the cost of a quick (weighted A*) solution,
+     *                      otherwise it starts at infinity
+     */
+    public void setGreedyBound(boolean greedyBound){
+        this.greedyBound = greedyBound;
+    }
+
+    /**
+     * Stops the running algorithm of this object (from another thread), the algorithm throws
+     * a CancellationException at its next expansion
+     */
+    public void cancel(){
+        cancelled = true;
+        Algo[] running = racers;
+        if (running != null) {
+            for (Algo racer : running) {
+                if (racer != null) {
+                    racer.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the required algorithm from the start State and writes to the output file the desired values
      * (run time, open list, number of States generated during the algorithm run and cost)
      * @param start - The start State, the state from which the algorithm begins
      * @param goal  - The target state, the state in which the algorithm will end
@@ -43,33 +225,99 @@ public class Algo {
      */
     public void run(State start, State goal) throws NoSuchMethodException, InvocationTargetException,
             IllegalAccessException {
-        Method m = Algo.class.getDeclaredMethod(algo,State.class,State.class);
+        String output = solve(start, goal);
+        file = new File(outputFilePath);
+        try {
+            BufferedWriter bf = new BufferedWriter(new FileWriter(file));
+            bf.write(output);
+            bf.flush();
+            bf.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs the required algorithm from the start State (an Algo object runs one search at a time,
+     * concurrent searches need an Algo object each)
+     * @param start - The start State, the state from which the algorithm begins
+     * @param goal  - The target state, the state in which the algorithm will end
+     * @return the content of the output file: the path, the number of States generated, the cost
+     *         and the run time (if required)
+     * @throws NoSuchMethodException
+     * @throws InvocationTargetException
+     * @throws IllegalAccessException
+     */
+    public String solve(State start, State goal) throws NoSuchMethodException, InvocationTargetException,
+            IllegalAccessException {
         long startTime = 0, stopTime, totalTime = 0;
         if (withTime){
             startTime = System.nanoTime();
         }
-        String ans = (String)m.invoke(this,start, goal);
+        details = null;
+        String ans;
+        String key = cache == null ? null : SolutionCache.key(algo, parameters(), heuristic, start, goal);
+        SolutionCache.Entry hit = key == null ? null : cache.get(key);
+        if (hit != null) {
+            ans = hit.path;
+            cost = hit.cost;
+            numOfStates = hit.numOfStates;
+            details = hit.details;
+        }
+        else {
+            HeuristicCache shared = HeuristicCache.shared();
+            long lookups = shared == null ? 0 : shared.getLookups(), hits = shared == null ? 0 : shared.getHits();
+            ans = search(start, goal);
+            String searchDetails = details;
+            if (shared != null && shared.getLookups() > lookups) {
+                // the counters are shared with the concurrent searches (in the server mode)
+                lookups = shared.getLookups() - lookups;
+                hits = shared.getHits() - hits;
+                details = (details == null ? "" : details + ", ") + "Heuristic cache: " + hits + "/" + lookups
+                        + " hits (" + (100 * hits / lookups) + "%)";
+            }
+            if (key != null) {
+                cache.put(key, new SolutionCache.Entry(ans, cost, numOfStates, searchDetails));
+            }
+        }
         if(withTime){
             stopTime = System.nanoTime();
             totalTime = stopTime - startTime;
         }
-        file = new File(outputFilePath);
-        try {
-            BufferedWriter bf = new BufferedWriter(new FileWriter(file));
-            //bf.write(algo +"\n");
-            bf.write(ans + "\n");
-            bf.write("Num: " + numOfStates +"\n");
-            if(!ans.equals("no path")) {
-                bf.write("Cost: " + cost +"\n");
-            }
-            if (withTime) {
-                bf.write((double) totalTime / 1_000_000_000 + " seconds");
-            }
-            bf.flush();
-            bf.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        StringBuilder output = new StringBuilder();
+        output.append(ans).append("\n");
+        output.append("Num: ").append(numOfStates).append("\n");
+        if(!ans.equals("no path")) {
+            output.append("Cost: ").append(cost).append("\n");
+        }
+        if (details != null) {
+            output.append(details).append("\n");
         }
+        if (withTime) {
+            output.append((double) totalTime / 1_000_000_000).append(" seconds");
+        }
+        return output.toString();
+    }
+
+    /**
+     * @return the parameters that change the answers of the algorithms (the weight and node limit of WA*,
+     *         the radius of Perimeter A*, the lookahead of LRTA*, the bit array of the bitstate searches and
+     *         the portfolio), a part of the key of the instances in the solution cache
+     */
+    String parameters() {
+        return "w" + weight + ",n" + nodeLimit + ",r" + radius + ",l" + lookahead + "/" + moveMillis
+                + ",b" + bitstateBits + "/" + bitstateHashes + "/" + bitstateDepth
+                + (portfolio == null ? "" : ",p" + String.join("/", portfolio));
+    }
+
+    /**
+     * Runs the required algorithm from the start State
+     * @return The order of operations from the start State to the goal State as a string
+     */
+    private String search(State start, State goal) throws NoSuchMethodException, InvocationTargetException,
+            IllegalAccessException {
+        Method m = Algo.class.getDeclaredMethod(algo,State.class,State.class);
+        return (String)m.invoke(this,start, goal);
     }
 
     /**
@@ -81,26 +329,27 @@ public class Algo {
      */
     public String BFS(State start, State goal) {
         numOfStates = 0;
-        Hashtable<String, State> open = new Hashtable<>();
+        Hashtable<PackedBoard, State> open = new Hashtable<>();
         Queue<State> q = new LinkedList<>();
-        Hashtable<String, State> close = new Hashtable<>();
-        open.put(start.toString(), start);
+        Hashtable<PackedBoard, State> close = new Hashtable<>();
+        open.put(start.getPacked(), start);
         q.add(start);
         numOfStates++;
         while (!q.isEmpty()) {
+            checkCancelled();
             handleOpenList(open);
             State curState = q.poll();
-            open.remove(curState.toString());
-            close.put(curState.toString(), curState);
+            open.remove(curState.getPacked());
+            close.put(curState.getPacked(), curState);
             ArrayList<State> suc = curState.genSuccessors();
             for (State next : suc) {
                 numOfStates++;
-                if (!open.containsKey(next.toString()) && !close.containsKey(next.toString())) {
+                if (!open.containsKey(next.getPacked()) && !close.containsKey(next.getPacked())) {
                     if (next.isGoal(goal.getCurBoard())) {
                         cost = next.getCost(false);
                         return next.getStringPath();
                     }
-                    open.put(next.toString(), next);
+                    open.put(next.getPacked(), next);
                     q.add(next);
                 }
             }
@@ -108,6 +357,108 @@ public class Algo {
         return "no path";
     }
 
+    /**
+     * BFS Algorithm with bitstate duplicate detection: the seen boards are bits of a Bloom filter instead of
+     * the open and closed tables (a few bits per board instead of dozens of bytes), for the sweeps of boards
+     * too large for the tables. A board may be pruned by mistake, so a path may be missed (or be longer),
+     * the estimated chance of that is reported in the details with the number of boards seen.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String BitstateBFS(State start, State goal) {
+        numOfStates = 1;
+        BitstateTable seen = new BitstateTable(bitstateBits, bitstateHashes);
+        Queue<State> q = new ArrayDeque<>();
+        seen.add(start.getHash());
+        q.add(start);
+        String ans = "no path";
+        if (start.isGoal(goal.getCurBoard())) {
+            q.clear();
+            cost = 0;
+            ans = "";
+        }
+        search:
+        while (!q.isEmpty()) {
+            checkCancelled();
+            State curState = q.poll();
+            for (State next : curState.genSuccessors()) {
+                numOfStates++;
+                if (seen.add(next.getHash())) {
+                    if (next.isGoal(goal.getCurBoard())) {
+                        cost = next.getCost(false);
+                        ans = next.getStringPath();
+                        break search;
+                    }
+                    q.add(next);
+                }
+            }
+        }
+        details = bitstateDetails(seen, false);
+        return ans;
+    }
+
+    /**
+     * DFS Algorithm with bitstate duplicate detection (supertrace): like BitstateBFS, but the memory besides
+     * the bit array is only the States on the current path and their successors, so the paths are limited
+     * to 'bitstateDepth' moves (the deeper boards are not searched, and if any path was cut the omission
+     * probability is reported as unknown). The path is not the shortest.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String BitstateDFS(State start, State goal) {
+        numOfStates = 1;
+        BitstateTable seen = new BitstateTable(bitstateBits, bitstateHashes);
+        ArrayDeque<State> stack = new ArrayDeque<>();
+        ArrayDeque<Integer> depths = new ArrayDeque<>();
+        seen.add(start.getHash());
+        stack.push(start);
+        depths.push(0);
+        String ans = "no path";
+        boolean truncated = false;
+        while (!stack.isEmpty()) {
+            checkCancelled();
+            State curState = stack.pop();
+            int depth = depths.pop();
+            if (curState.isGoal(goal.getCurBoard())) {
+                cost = curState.getCost(false);
+                ans = curState.getStringPath();
+                break;
+            }
+            if (depth == bitstateDepth) {
+                truncated = true;
+                continue;
+            }
+            ArrayList<State> suc = curState.genSuccessors();
+            for (int i = suc.size() - 1; i >= 0; i--) {     // the first successor is expanded first
+                numOfStates++;
+                State next = suc.get(i);
+                // a board at the depth limit is not expanded, so it is not marked as seen
+                // (it would prune the board when it is reached again at a shallower depth)
+                if (depth + 1 == bitstateDepth ? !seen.contains(next.getHash()) : seen.add(next.getHash())) {
+                    stack.push(next);
+                    depths.push(depth + 1);
+                }
+            }
+        }
+        details = bitstateDetails(seen, truncated);
+        return ans;
+    }
+
+    /**
+     * @param truncated - true if some paths were cut at the depth limit: the boards below a board that was
+     *                    reached deep first and pruned when reached again at a shallower depth may be missed,
+     *                    so the omission probability is not known
+     */
+    private String bitstateDetails(BitstateTable seen, boolean truncated) {
+        return "Bitstate: " + seen.size() + " boards in " + (seen.bytes() >> 10) + "KB, estimated omission probability "
+                + (truncated ? "unknown (paths cut at " + bitstateDepth + " moves)"
+                        : String.format("%.3g", seen.omissionProbability()));
+    }
+
     /**
      * DFID Algorithm
      * @param start - start State
@@ -118,7 +469,7 @@ public class Algo {
     public String DFID(State start, State goal) {
         numOfStates = 0;
         for (int depth = 1 ;; depth++) {
-            Hashtable<String, State> h = new Hashtable<>();
+            Hashtable<PackedBoard, State> h = new Hashtable<>();
             String result = Limited_DFS(start, goal, depth, h);
             if (!result.equals("cutoff")) {
                 return result;
@@ -136,20 +487,21 @@ public class Algo {
      *         If there is no such route the method will return "no path",
      *         If the method has reached the limit "cutoff" will return
      */
-    public String Limited_DFS(State curState, State goal, int limit, Hashtable<String, State> h) {
+    public String Limited_DFS(State curState, State goal, int limit, Hashtable<PackedBoard, State> h) {
         if (curState.isGoal(goal.getCurBoard())) {
             cost = curState.getCost(false);
             return curState.getStringPath();
         } else if (limit == 0) {
             return "cutoff";
         } else {
+            checkCancelled();
             handleOpenList(h);
-            h.put(curState.toString(), curState);
+            h.put(curState.getPacked(), curState);
             boolean isCutoff = false;
             ArrayList<State> suc = curState.genSuccessors();
             for (State next : suc) {
                 numOfStates++;
-                if(h.containsKey(next.toString())){
+                if(h.containsKey(next.getPacked())){
                     continue;
                 }
                 String result = Limited_DFS(next, goal, limit - 1, h);
@@ -159,7 +511,7 @@ public class Algo {
                     return result;
                 }
             }
-            h.remove(curState.toString());
+            h.remove(curState.getPacked());
             if (isCutoff) {
                 return "cutoff";
             } else {
@@ -177,35 +529,36 @@ public class Algo {
      */
     public String AStar(State start, State goal) {
         numOfStates = 0;
-        Hashtable<String, State> close = new Hashtable<>();
+        Hashtable<PackedBoard, State> close = new Hashtable<>();
         PriorityQueue<State> q = new PriorityQueue<>();
-        Hashtable<String, State> open = new Hashtable<>();
+        Hashtable<PackedBoard, State> open = new Hashtable<>();
         q.add(start);
-        open.put(start.toString(), start);
+        open.put(start.getPacked(), start);
         numOfStates++;
         while (!q.isEmpty()) {
+            checkCancelled();
             handleOpenList(open);
             State current = q.poll(); // Get the cheapest state to explore.
-            open.remove(current.toString(), current);
+            open.remove(current.getPacked(), current);
             if (current.isGoal(goal.getCurBoard())) {
                 cost = current.getCost(true);
                 return current.getStringPath();
             }
-            close.put(current.toString(), current); // Put it in the closed list.
+            close.put(current.getPacked(), current); // Put it in the closed list.
             ArrayList<State> suc = current.genSuccessors();
             // Iterate over all of the allowed operators.
             for (State next : suc) {
                 numOfStates++;
-                if (!open.containsKey(next.toString()) && !close.containsKey(next.toString())) {
+                if (!open.containsKey(next.getPacked()) && !close.containsKey(next.getPacked())) {
                     q.add(next);
-                    open.put(next.toString(), next);
-                } else if (open.containsKey(next.toString())) {
-                    State n = open.get(next.toString());
+                    open.put(next.getPacked(), next);
+                } else if (open.containsKey(next.getPacked())) {
+                    State n = open.get(next.getPacked());
                     if (n.getCost(false) > next.getCost(false)) {
                         q.remove(n);
-                        open.remove(n.toString());
+                        open.remove(n.getPacked());
                         q.add(next);
-                        open.put(next.toString(), next);
+                        open.put(next.getPacked(), next);
                     }
                 }
             }
@@ -223,17 +576,18 @@ public class Algo {
     public String IDAStar(State start, State goal) {
         numOfStates = 0;
         Stack<State> stack = new Stack<>();
-        Hashtable<String, State> h = new Hashtable<>();
+        Hashtable<PackedBoard, State> h = new Hashtable<>();
         int t = start.getCost(true);
         while (t != Integer.MAX_VALUE) {
             int minF = Integer.MAX_VALUE;
             stack.push(start);
-            h.put(stack.toString(), start);
+            h.put(start.getPacked(), start);
             while (!stack.isEmpty()) {
+                checkCancelled();
                 handleOpenList(h);
                 State current = stack.pop();
                 if (current.getOut()) {
-                    h.remove(current.toString());
+                    h.remove(current.getPacked());
                 } else {
                     current.setOut(true);
                     stack.push(current);
@@ -245,14 +599,14 @@ public class Algo {
                             minF = Math.min(minF, next.getCost(true));
                             continue;
                         }
-                        if (h.containsKey(next.toString())) {
-                            State same = h.get(next.toString());
+                        if (h.containsKey(next.getPacked())) {
+                            State same = h.get(next.getPacked());
                             if (same.getOut()) {
                                 continue;
                             } else {
                                 if (same.getCost(true) > next.getCost(true)) {
                                     stack.remove(same);
-                                    h.remove(same.toString());
+                                    h.remove(same.getPacked());
                                 } else {
                                     continue;
                                 }
@@ -263,7 +617,7 @@ public class Algo {
                             return next.getStringPath();
                         }
                         stack.push(next);
-                        h.put(next.toString(), next);
+                        h.put(next.getPacked(), next);
                     }
                 }
             }
@@ -283,16 +637,17 @@ public class Algo {
     public String DFBnB(State start, State goal) {
         numOfStates = 0;
         Stack<State> stack = new Stack<>();
-        Hashtable<String, State> h = new Hashtable<>();
+        Hashtable<PackedBoard, State> h = new Hashtable<>();
         stack.push(start);
-        h.put(start.toString(), start);
+        h.put(start.getPacked(), start);
         String result = "no path";
         int t = Integer.MAX_VALUE;
         while (!stack.isEmpty()) {
+            checkCancelled();
             handleOpenList(h);
             State current = stack.pop();
             if (current.getOut()) {
-                h.remove(current.toString());
+                h.remove(current.getPacked());
             }
             else {
                 current.setOut(true);
@@ -314,8 +669,8 @@ public class Algo {
                     numOfStates++;
                     if (next.getCost(true) >= t) {
                         suc.subList(i, suc.size()).clear();
-                    } else if (h.containsKey(next.toString())) {
-                        State same = h.get(next.toString());
+                    } else if (h.containsKey(next.getPacked())) {
+                        State same = h.get(next.getPacked());
                         if (same.getOut()) {
                             suc.remove(next);
                         } else {
@@ -323,7 +678,7 @@ public class Algo {
                                 suc.remove(next);
                             } else {
                                 stack.remove(same);
-                                h.remove(same.toString());
+                                h.remove(same.getPacked());
                             }
                         }
                     } else if (next.isGoal(goal.getCurBoard())) {   // if we reached here, f(g) < t
@@ -336,19 +691,1029 @@ public class Algo {
                 Collections.reverse(suc);
                 for (State s : suc) {
                     stack.push(s);
-                    h.put(s.toString(), s);
+                    h.put(s.getPacked(), s);
                 }
             }
         }
         return result;
     }
 
+    /**
+     * Parallel DFBnB Algorithm: the search tree is split between worker threads (a fork/join pool, the idle
+     * workers steal the subtrees that were forked by the busy ones). The cost of the best solution so far is
+     * shared by all the workers in an atomic integer, so every worker prunes with the best bound at once, and
+     * the best goal State is published by compare and set.
+     * The bound starts at the cost of a quick weighted A* solution (see setGreedyBound).
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String ParallelDFBnB(State start, State goal) {
+        numOfStates = 0;
+        AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+        AtomicReference<State> best = new AtomicReference<>();
+        LongAdder generated = new LongAdder();
+        String greedyPath = "no path";
+        if (greedyBound) {
+            Algo greedy = new Algo("WAStar", false, false);
+            greedy.weight = 5;
+            greedy.nodeLimit = 0;   // stop at the first solution
+            racers = new Algo[]{greedy};
+            greedyPath = greedy.WAStar(start, goal);
+            if (!greedyPath.equals("no path")) {
+                bound.set(greedy.cost + 1);     // the bound is exclusive, an equal solution is also found
+                cost = greedy.cost;
+            }
+            generated.add(greedy.numOfStates);
+        }
+        start.setOut(false);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.invoke(new BnBTask(start, goal, new HashSet<>(), bound, best, generated));
+        } finally {
+            pool.shutdownNow();
+        }
+        numOfStates = generated.intValue();
+        State found = best.get();
+        if (found == null) {
+            return greedyPath;
+        }
+        cost = found.getCost(false);
+        return found.getStringPath();
+    }
+
+    /**
+     * A subtree of the Parallel DFBnB Algorithm, searched depth first like in DFBnB. When other workers are
+     * idle, the successors of the expanded State are forked as new subtrees instead of being pushed.
+     */
+    private final class BnBTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final State root;
+        private final State goal;
+        private final HashSet<PackedBoard> ancestors;   // the boards on the path from the start to the root
+        private final AtomicInteger bound;
+        private final AtomicReference<State> best;
+        private final LongAdder generated;
+
+        BnBTask(State root, State goal, HashSet<PackedBoard> ancestors, AtomicInteger bound,
+                AtomicReference<State> best, LongAdder generated) {
+            this.root = root;
+            this.goal = goal;
+            this.ancestors = ancestors;
+            this.bound = bound;
+            this.best = best;
+            this.generated = generated;
+        }
+
+        @Override
+        protected void compute() {
+            if (root.isGoal(goal.getCurBoard())) {
+                publish(root);
+                return;
+            }
+            Stack<State> stack = new Stack<>();
+            Hashtable<PackedBoard, State> h = new Hashtable<>();
+            stack.push(root);
+            h.put(root.getPacked(), root);
+            long count = 0;
+            while (!stack.isEmpty()) {
+                checkCancelled();
+                State current = stack.pop();
+                if (current.getOut()) {
+                    h.remove(current.getPacked());
+                    continue;
+                }
+                current.setOut(true);
+                stack.push(current);
+                ArrayList<State> suc = current.genSuccessors();
+                suc.sort(Comparator.comparingInt((State s) -> s.getCost(true)).thenComparingInt(State::getId));
+                ArrayList<State> kept = new ArrayList<>();
+                for (State next : suc) {
+                    count++;
+                    if (next.getCost(true) >= bound.get()) {
+                        break;
+                    }
+                    if (ancestors.contains(next.getPacked())) {
+                        continue;
+                    }
+                    State same = h.get(next.getPacked());
+                    if (same != null) {
+                        if (same.getOut() || same.getCost(true) <= next.getCost(true)) {
+                            continue;
+                        }
+                        stack.remove(same);
+                        h.remove(same.getPacked());
+                    }
+                    if (next.isGoal(goal.getCurBoard())) {
+                        publish(next);
+                        break;
+                    }
+                    kept.add(next);
+                }
+                if (kept.size() > 1 && getPool().getParallelism() > 1 && getSurplusQueuedTaskCount() < 2) {
+                    HashSet<PackedBoard> path = new HashSet<>(ancestors);
+                    for (State s : stack) {
+                        if (s.getOut()) {
+                            path.add(s.getPacked());
+                        }
+                    }
+                    ArrayList<BnBTask> subtrees = new ArrayList<>();
+                    for (State next : kept) {
+                        subtrees.add(new BnBTask(next, goal, path, bound, best, generated));
+                    }
+                    generated.add(count);
+                    count = 0;
+                    invokeAll(subtrees);
+                    continue;
+                }
+                Collections.reverse(kept);
+                for (State s : kept) {
+                    stack.push(s);
+                    h.put(s.getPacked(), s);
+                }
+            }
+            generated.add(count);
+        }
+
+        /**
+         * Makes the goal State the best solution if it is cheaper than the best one so far
+         */
+        private void publish(State found) {
+            int c = found.getCost(false);
+            while (true) {
+                State current = best.get();
+                if (current != null && current.getCost(false) <= c) {
+                    return;
+                }
+                if (best.compareAndSet(current, found)) {
+                    bound.accumulateAndGet(c, Math::min);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hash Distributed A* Algorithm: A* whose boards are split between several JVM processes by their hash
+     * (each process keeps the open and closed lists of its own boards), for instances that don't fit in the
+     * heap of one JVM. See DistributedAStar and setWorkers.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String HDAStar(State start, State goal) {
+        DistributedAStar search = new DistributedAStar(processes, workers, heuristic);
+        String path;
+        try {
+            path = search.search(start, goal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        numOfStates = search.getNumOfStates();
+        cost = search.getCost();
+        details = "Processes: " + (workers == null ? processes : workers.length);
+        return path;
+    }
+
+    /**
+     * A State in the fringe of the Fringe Search Algorithm (a doubly linked list)
+     */
+    private static final class FringeNode {
+        final State state;
+        final int g;            // the cost, or the number of moves when the bound is a depth
+        FringeNode prev, next;
+        boolean inFringe = true;
+
+        FringeNode(State state, int g) {
+            this.state = state;
+            this.g = g;
+        }
+    }
+
+    /**
+     * Fringe Search Algorithm, with f value bounds (like IDA*).
+     * The fringe (the "now" and "later" States) is kept from one bound to the next, so every bound goes on
+     * from the States that the previous bound left instead of starting from the root, and the cache of the
+     * cheapest known cost of every board removes the duplicates.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String Fringe(State start, State goal) {
+        return fringe(start, goal, false);
+    }
+
+    /**
+     * Fringe Search Algorithm with depth bounds (finds the path with the least moves, like DFID)
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String FringeDepth(State start, State goal) {
+        return fringe(start, goal, true);
+    }
+
+    /**
+     * Fringe Search: every iteration goes over the fringe from its head, a State whose f value is over the
+     * bound stays for the next iteration ("later"), and the others are expanded and leave the fringe, their
+     * successors are put right after them so they are visited in the same iteration ("now").
+     * @param depthBound - if true the bound is on the number of moves (without the heuristic function),
+     *                     otherwise on the f value
+     */
+    private String fringe(State start, State goal, boolean depthBound) {
+        numOfStates = 1;
+        Hashtable<PackedBoard, FringeNode> cache = new Hashtable<>();
+        FringeNode head = new FringeNode(start, depthBound ? 0 : start.getCost(false));
+        cache.put(start.getPacked(), head);
+        int bound = depthBound ? 0 : start.getCost(true);
+        while (head != null) {
+            checkCancelled();
+            int nextBound = Integer.MAX_VALUE;
+            FringeNode node = head;
+            while (node != null) {
+                checkCancelled();
+                handleFringe(head);
+                State current = node.state;
+                int f = depthBound ? node.g : current.getCost(true);
+                if (f > bound) {
+                    nextBound = Math.min(nextBound, f);
+                    node = node.next;
+                    continue;
+                }
+                if (current.isGoal(goal.getCurBoard())) {
+                    cost = current.getCost(false);
+                    return current.getStringPath();
+                }
+                FringeNode after = node;
+                for (State child : current.genSuccessors()) {
+                    numOfStates++;
+                    int g = depthBound ? node.g + 1 : child.getCost(false);
+                    FringeNode known = cache.get(child.getPacked());
+                    if (known != null && g >= known.g) {
+                        continue;
+                    }
+                    if (known != null && known.inFringe) {
+                        head = unlink(head, known);
+                    }
+                    FringeNode added = new FringeNode(child, g);
+                    added.prev = after;     // right after the State (in the order of the successors)
+                    added.next = after.next;
+                    if (after.next != null) {
+                        after.next.prev = added;
+                    }
+                    after.next = added;
+                    after = added;
+                    cache.put(child.getPacked(), added);
+                }
+                FringeNode next = node.next;
+                head = unlink(head, node);
+                node = next;
+            }
+            bound = nextBound;
+        }
+        return "no path";
+    }
+
+    /**
+     * print the fringe (the "now" and "later" States, the open list of Fringe Search) in its order,
+     * if the open list is required
+     * @param head - The head of the fringe
+     */
+    private void handleFringe(FringeNode head) {
+        if (withOpen) {
+            System.out.println("\nOpen List:");
+            if (head == null) {
+                System.out.println("empty...");
+            }
+            for (FringeNode node = head; node != null; node = node.next) {
+                System.out.println(node.state);
+            }
+        }
+    }
+
+    /**
+     * Removes the node from the fringe
+     * @return the head of the fringe
+     */
+    private static FringeNode unlink(FringeNode head, FringeNode node) {
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        node.prev = node.next = null;
+        node.inFringe = false;
+        return head;
+    }
+
+    /**
+     * A State in the open list of the Partial Expansion A* Algorithm, with its stored f value
+     */
+    private static final class Partial {
+        final State state;
+        final int f;
+
+        Partial(State state, int f) {
+            this.state = state;
+            this.f = f;
+        }
+    }
+
+    /**
+     * Partial Expansion A* Algorithm, meant for two empty blocks (up to 12 successors per State, most of
+     * them are never expanded by A*). A State is kept in the open list with a stored f value (at first its
+     * own f value), and when it is expanded only the successors whose f value is at most the stored value
+     * are put in the open list; the others are dropped (they are generated again if needed), and the State
+     * goes back to the open list with the smallest f value of the dropped successors.
+     * So the open list holds far fewer States than in A*, and the path is still the cheapest one.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String PEAStar(State start, State goal) {
+        numOfStates = 0;
+        Comparator<Partial> partialComparator = Comparator.comparingInt((Partial p) -> p.f)
+                .thenComparingInt(p -> p.state.getId());
+        PriorityQueue<Partial> q = new PriorityQueue<>(partialComparator);
+        Hashtable<PackedBoard, State> known = new Hashtable<>();   // the cheapest known State of each board
+        Hashtable<PackedBoard, State> open = new Hashtable<>();    // the States in the open list (not the stale copies)
+        q.add(new Partial(start, start.getCost(true)));
+        known.put(start.getPacked(), start);
+        open.put(start.getPacked(), start);
+        numOfStates++;
+        int peak = 1;
+        while (!q.isEmpty()) {
+            checkCancelled();
+            handleOpenList(open);
+            Partial current = q.poll();
+            State state = current.state;
+            if (known.get(state.getPacked()) != state) {
+                continue;   // a cheaper copy of this board was found after this one was added
+            }
+            open.remove(state.getPacked());
+            if (state.isGoal(goal.getCurBoard())) {
+                cost = state.getCost(false);
+                details = "Peak open list: " + peak;
+                return state.getStringPath();
+            }
+            int nextF = Integer.MAX_VALUE;
+            for (State next : state.genSuccessors()) {
+                numOfStates++;
+                int f = next.getCost(true);
+                if (f > current.f) {
+                    nextF = Math.min(nextF, f);
+                    continue;
+                }
+                State n = known.get(next.getPacked());
+                if (n == null || next.getCost(false) < n.getCost(false)) {
+                    known.put(next.getPacked(), next);
+                    open.put(next.getPacked(), next);
+                    q.add(new Partial(next, Math.max(f, current.f)));
+                }
+            }
+            if (nextF != Integer.MAX_VALUE) {
+                q.add(new Partial(state, nextF));
+                open.put(state.getPacked(), state);
+            }
+            peak = Math.max(peak, open.size());
+        }
+        return "no path";
+    }
+
+    /**
+     * A State in the open list of the Lazy A* Algorithm, with its f value and whether the f value is
+     * computed with the whole heuristic function or only with its cheap part
+     */
+    private static final class Deferred {
+        final State state;
+        final int f;
+        final boolean exact;
+
+        Deferred(State state, int f, boolean exact) {
+            this.state = state;
+            this.f = f;
+            this.exact = exact;
+        }
+    }
+
+    /**
+     * Lazy A* Algorithm, for the expensive heuristic functions (walking distance and pattern databases).
+     * The successors are put in the open list with the cheap part of the heuristic function (the Manhattan
+     * distance and linear conflict, updated from the previous State), and the whole heuristic function is
+     * computed only when a State reaches the top of the open list: the f value of the State is the larger of the
+     * two (the cheap part is not always lower than the walking distance or the pattern database alone, both are
+     * admissible), if it raises the f value the State goes back to the open list, otherwise it is expanded.
+     * Many States are never expanded (they are still in the open list when the goal is found), so their
+     * expensive heuristic function is never computed. The number of these saved computations is reported in
+     * the details.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String LazyAStar(State start, State goal) {
+        numOfStates = 0;
+        Comparator<Deferred> deferredComparator = Comparator.comparingInt((Deferred d) -> d.f)
+                .thenComparingInt(d -> d.exact ? 0 : 1)
+                .thenComparingInt(d -> d.state.getId());
+        PriorityQueue<Deferred> q = new PriorityQueue<>(deferredComparator);
+        Hashtable<PackedBoard, State> open = new Hashtable<>();    // the cheapest known State of each board
+        Hashtable<PackedBoard, State> close = new Hashtable<>();
+        q.add(new Deferred(start, start.getCheapCost(), false));
+        open.put(start.getPacked(), start);
+        numOfStates++;
+        int evaluated = 0;
+        while (!q.isEmpty()) {
+            checkCancelled();
+            handleOpenList(open);
+            Deferred current = q.poll();
+            State state = current.state;
+            if (open.get(state.getPacked()) != state) {
+                continue;   // a cheaper copy of this board was found after this one was added
+            }
+            if (!current.exact) {
+                evaluated++;
+                int f = Math.max(current.f, state.getCost(true));
+                if (f > current.f) {
+                    q.add(new Deferred(state, f, true));
+                    continue;
+                }
+            }
+            open.remove(state.getPacked());
+            if (state.isGoal(goal.getCurBoard())) {
+                cost = state.getCost(false);
+                details = "Heuristic computed: " + evaluated + ", saved: " + unevaluated(q, open);
+                return state.getStringPath();
+            }
+            close.put(state.getPacked(), state);
+            for (State next : state.genSuccessors()) {
+                numOfStates++;
+                if (close.containsKey(next.getPacked())) {
+                    continue;
+                }
+                State n = open.get(next.getPacked());
+                if (n == null || next.getCost(false) < n.getCost(false)) {
+                    open.put(next.getPacked(), next);
+                    q.add(new Deferred(next, next.getCheapCost(), false));
+                }
+            }
+        }
+        return "no path";
+    }
+
+    /**
+     * @return the number of States in the open list of Lazy A* whose whole heuristic function was never computed,
+     *         0 with the Manhattan distance (it has no expensive part to save)
+     */
+    private int unevaluated(PriorityQueue<Deferred> q, Hashtable<PackedBoard, State> open) {
+        if (heuristic == PuzzleStateAlgo.Heuristic.MANHATTAN) {
+            return 0;
+        }
+        int saved = 0;
+        for (Deferred d : q) {
+            if (!d.exact && open.get(d.state.getPacked()) == d.state) {
+                saved++;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Real time search (LRTA* with an A* lookahead and the learning rule of RTAA*), for the consumers that
+     * start to execute the moves before the whole path is known. Before every move a bounded A* search from
+     * the current State expands up to 'lookahead' States (or runs up to 'moveMillis'), then the heuristic value
+     * of every expanded State is raised to (the f value of the best State in the open list - its cost from the
+     * current State), and the first move toward that best State is committed and sent to the move listener.
+     * When the lookahead reaches the goal the whole path to it is committed. The learned heuristic values are
+     * kept for the next runs toward the same goal board (so repeated runs commit cheaper paths), for the
+     * LEARNED_GOALS most recently used goals and up to LEARNED_BOARDS boards each.
+     * The path may visit a board more than once, and it is not always the cheapest path.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String LRTAStar(State start, State goal) {
+        numOfStates = 1;
+        Hashtable<PackedBoard, Integer> h;
+        synchronized (learned) {
+            h = learned.computeIfAbsent(goal.getNumOfRows() + "x" + goal.getNumOfCols() + ":"
+                    + goal.getNumOfEmptyBlocks() + ":" + goal.getPacked() + ":" + heuristic, k -> new Hashtable<>());
+        }
+        Comparator<Partial> partialComparator = Comparator.comparingInt((Partial p) -> p.f)
+                .thenComparingInt(p -> p.state.getId());
+        State current = start;
+        StringBuilder path = new StringBuilder();
+        int moves = 0;
+        long longest = 0;
+        cost = 0;
+        while (!current.isGoal(goal.getCurBoard())) {
+            checkCancelled();
+            long startTime = System.nanoTime();
+            // a new root, so the lookahead may also take back the last move
+            current = current.toward(goal.getCurBoard());
+            PriorityQueue<Partial> q = new PriorityQueue<>(partialComparator);
+            Hashtable<PackedBoard, State> open = new Hashtable<>();    // the cheapest known State of each board
+            HashMap<State, State> parent = new HashMap<>();    // the previous State of every State (by identity)
+            ArrayList<State> expanded = new ArrayList<>();
+            q.add(new Partial(current, h(h, current)));
+            open.put(current.getPacked(), current);
+            Partial best = null;
+            while (!q.isEmpty()) {
+                Partial top = q.peek();
+                if (open.get(top.state.getPacked()) != top.state) {
+                    q.poll();   // a cheaper copy of this board was found after this one was added
+                    continue;
+                }
+                // the root is always expanded (it is not the goal), so the best State is never the root
+                if (top.state.isGoal(goal.getCurBoard()) || (!expanded.isEmpty() && (expanded.size() >= lookahead
+                        || (moveMillis > 0 && System.nanoTime() - startTime >= moveMillis * 1_000_000)))) {
+                    best = top;
+                    break;
+                }
+                q.poll();
+                State state = top.state;
+                expanded.add(state);
+                for (State next : state.genSuccessors()) {
+                    numOfStates++;
+                    State n = open.get(next.getPacked());
+                    if (n == null || next.getCost(false) < n.getCost(false)) {
+                        open.put(next.getPacked(), next);
+                        parent.put(next, state);
+                        q.add(new Partial(next, next.getCost(false) + h(h, next)));
+                    }
+                }
+            }
+            if (best == null) {
+                return "no path";
+            }
+            if (h.size() + expanded.size() > LEARNED_BOARDS) {
+                h.clear();  // learn again from the heuristic function
+            }
+            for (State x : expanded) {
+                int value = best.f - x.getCost(false);
+                if (value > h(h, x)) {
+                    h.put(x.getPacked(), value);
+                }
+            }
+            ArrayList<State> steps = new ArrayList<>();     // the lookahead path to the best State
+            for (State s = best.state; s != current; s = parent.get(s)) {
+                steps.add(s);
+            }
+            Collections.reverse(steps);
+            if (!best.state.isGoal(goal.getCurBoard())) {
+                steps.subList(1, steps.size()).clear();    // only the first move
+            }
+            String[] committed = steps.get(steps.size() - 1).getStringPath().split("-");
+            for (int i = 0; i < steps.size(); i++) {
+                path.append(path.length() == 0 ? "" : "-").append(committed[i]);
+                moves++;
+                if (moveListener != null) {
+                    moveListener.move(committed[i], cost + steps.get(i).getCost(false));
+                }
+            }
+            current = steps.get(steps.size() - 1);
+            cost += current.getCost(false);
+            longest = Math.max(longest, System.nanoTime() - startTime);
+        }
+        details = "Moves: " + moves + ", learned: " + h.size() + " boards, longest move: "
+                + (double) longest / 1_000_000 + " ms";
+        return path.toString();
+    }
+
+    /**
+     * @return the heuristic value of the State, learned by the real time search or its own
+     */
+    private static int h(Hashtable<PackedBoard, Integer> learned, State s) {
+        Integer value = learned.get(s.getPacked());
+        int own = s.getCost(true) - s.getCost(false);
+        return value == null ? own : Math.max(value, own);
+    }
+
+    /**
+     * Anytime Weighted A* Algorithm, meant for large boards (6x6 to 10x10) on which A* runs out of memory.
+     * The States are ordered by g + weight*h (h is updated incrementally from the previous State, so it is
+     * cheap on large boards), so a first solution is found quickly. Then the search goes on with the remaining
+     * open list and improves the solution, until the open list is empty (the solution is optimal)
+     * or until 'nodeLimit' more States were expanded (the best solution so far is returned).
+     * Duplicates are detected on the packed boards.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String WAStar(State start, State goal) {
+        numOfStates = 0;
+        Comparator<State> stateComparator = Comparator
+                .comparingDouble((State s) -> s.getCost(false) + weight * (s.getCost(true) - s.getCost(false)))
+                .thenComparingInt((State s) -> s.getCost(true) - s.getCost(false))
+                .thenComparingInt(State::getId);
+        PriorityQueue<State> q = new PriorityQueue<>(stateComparator);
+        HashMap<PackedBoard, Integer> bestCost = new HashMap<>(); // the cheapest known cost of each board
+        Hashtable<PackedBoard, State> open = new Hashtable<>();    // the States in the open list
+        q.add(start);
+        bestCost.put(start.getPacked(), start.getCost(false));
+        open.put(start.getPacked(), start);
+        numOfStates++;
+        State best = null;
+        int expanded = 0;
+        while (!q.isEmpty() && (best == null || expanded < nodeLimit)) {
+            checkCancelled();
+            handleOpenList(open);
+            State current = q.poll();
+            if (current.getCost(false) > bestCost.get(current.getPacked())) {
+                continue;   // a cheaper copy of this board was found after this one was added
+            }
+            open.remove(current.getPacked());
+            if (best != null && current.getCost(true) >= best.getCost(false)) {
+                continue;   // can't improve the current solution
+            }
+            if (current.isGoal(goal.getCurBoard())) {
+                if (best == null) {
+                    expanded = 0;   // the limit counts the expansions after the first solution
+                }
+                best = current;
+                continue;
+            }
+            expanded++;
+            ArrayList<State> suc = current.genSuccessors();
+            for (State next : suc) {
+                numOfStates++;
+                Integer known = bestCost.get(next.getPacked());
+                if (known == null || next.getCost(false) < known) {
+                    bestCost.put(next.getPacked(), next.getCost(false));
+                    open.put(next.getPacked(), next);
+                    q.add(next);
+                }
+            }
+        }
+        if (best == null) {
+            return "no path";
+        }
+        cost = best.getCost(false);
+        return best.getStringPath();
+    }
+
+    /**
+     * Bidirectional Uniform Cost Search. Two Dijkstra searches, one from the start State and one from the goal
+     * State (every move can be undone by a move with the same cost, so the successors of a State in the
+     * backward search are its predecessors). The side with the cheaper next State is expanded, so both
+     * searches grow to about half of the cost, and the search stops when the cheapest States of the two
+     * open lists add up to at least the cost of the best path found, so the cost is optimal
+     * also with weighted moves.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String BiUCS(State start, State goal) {
+        Comparator<State> stateComparator = Comparator.comparingInt((State s) -> s.getCost(false))
+                .thenComparingInt(State::getId);
+        return bidirectional(start, goal, stateComparator,
+                (f, b) -> f.getCost(false) + b.getCost(false), s -> s.getCost(false));
+    }
+
+    /**
+     * MM, bidirectional heuristic search that is guaranteed to meet in the middle. The backward search starts
+     * from the goal board with a heuristic function toward the start board (front-to-end heuristics on both
+     * sides). Each side orders its States by pr(n) = max(f(n), 2g(n)), so no State is expanded beyond half of
+     * the optimal cost, and the search stops when the lowest pr of the two open lists is at least the cost of
+     * the best path found. The number of States that each direction expanded is written to the output file.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String MM(State start, State goal) {
+        ToIntFunction<State> pr = s -> Math.max(s.getCost(true), 2 * s.getCost(false));
+        Comparator<State> stateComparator = Comparator.comparingInt(pr)
+                .thenComparingInt((State s) -> s.getCost(false))
+                .thenComparingInt(State::getId);
+        return bidirectional(start, goal.toward(start.getCurBoard()), stateComparator,
+                (f, b) -> Math.min(pr.applyAsInt(f), pr.applyAsInt(b)), s -> s.getCost(true));
+    }
+
+    /**
+     * Perimeter A* Algorithm, for many start boards toward the same goal board. A backward search from the goal
+     * board up to 'radius' is kept between the runs (see ReverseDistanceCache). A start board inside the radius
+     * is answered immediately, otherwise A* runs with the exact cost as the heuristic function inside the radius,
+     * and at least radius + 1 outside of it. The first board inside the radius that is taken from the open list
+     * completes an optimal path (every path to the goal goes through the perimeter).
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String Perimeter(State start, State goal) {
+        numOfStates = 0;
+        ReverseDistanceCache perimeter = ReverseDistanceCache.get(goal, radius);
+        ToIntFunction<State> h = s -> {
+            int exact = perimeter.cost(s);
+            if (exact >= 0) {
+                return exact;
+            }
+            return Math.max(s.getCost(true) - s.getCost(false), perimeter.getRadius() + 1);
+        };
+        Comparator<State> stateComparator = Comparator
+                .comparingInt((State s) -> s.getCost(false) + h.applyAsInt(s))
+                .thenComparingInt(State::getId);
+        PriorityQueue<State> q = new PriorityQueue<>(stateComparator);
+        Hashtable<PackedBoard, State> open = new Hashtable<>();    // the cheapest known State of each board
+        q.add(start);
+        open.put(start.getPacked(), start);
+        numOfStates++;
+        while (!q.isEmpty()) {
+            checkCancelled();
+            handleOpenList(open);
+            State current = q.poll();
+            if (open.get(current.getPacked()) != current) {
+                continue;   // a cheaper copy of this board was found after this one was added
+            }
+            int exact = perimeter.cost(current);
+            if (exact >= 0) {
+                cost = current.getCost(false) + exact;
+                String path = current.getStringPath();
+                String rest = perimeter.pathToGoal(current);
+                if (path.isEmpty() || rest.isEmpty()) {
+                    return path + rest;
+                }
+                return path + "-" + rest;
+            }
+            ArrayList<State> suc = current.genSuccessors();
+            for (State next : suc) {
+                numOfStates++;
+                State known = open.get(next.getPacked());
+                if (known == null || next.getCost(false) < known.getCost(false)) {
+                    open.put(next.getPacked(), next);
+                    q.add(next);
+                }
+            }
+        }
+        return "no path";
+    }
+
+    /**
+     * Solves small boards (up to 9 cells) from a complete solution table of the goal board
+     * (built once and saved to the disk, see SolutionTable), by following the best move of every board.
+     * Larger boards are solved by A*.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String Table(State start, State goal) {
+        SolutionTable table = SolutionTable.get(start.getNumOfRows(), start.getNumOfCols(),
+                start.getNumOfEmptyBlocks(), goal.getCurBoard());
+        if (table == null) {
+            return AStar(start, goal);
+        }
+        numOfStates = 0;
+        String path = table.solve(start.getCurBoard());
+        if (path == null) {
+            return "no path";
+        }
+        numOfStates = path.isEmpty() ? 1 : path.split("-").length + 1;    // the boards that were looked up
+        cost = table.cost(start.getCurBoard());
+        return path;
+    }
+
+    /**
+     * Portfolio Algorithm: races several algorithms that find the cheapest path (with different heuristic
+     * functions, see setPortfolio) on the same instance, each on its own thread. The first one to finish
+     * wins and the others are cancelled (they stop at their next expansion).
+     * The number of States and the cost are those of the winner, and the run time of every algorithm
+     * is reported in the details.
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String Portfolio(State start, State goal) {
+        String[] portfolio = this.portfolio != null ? this.portfolio : Arrays.copyOf(defaultPortfolio,
+                Math.min(defaultPortfolio.length, Math.max(2, Runtime.getRuntime().availableProcessors())));
+        int n = portfolio.length;
+        Algo[] racers = new Algo[n];
+        this.racers = racers;
+        String[] answers = new String[n];
+        long[] times = new long[n];
+        ExecutorService pool = SolverServer.newExecutor();
+        ExecutorCompletionService<Integer> done = new ExecutorCompletionService<>(pool);
+        for (int i = 0; i < n; i++) {
+            String[] entry = portfolio[i].split(":");
+            PuzzleStateAlgo.Heuristic h = PuzzleStateAlgo.Heuristic.valueOf(entry[1]);
+            State s = withHeuristic(start, goal, h);
+            State g = withHeuristic(goal, goal, h);
+            racers[i] = new Algo(entry[0], false, false);
+            racers[i].weight = weight;
+            racers[i].nodeLimit = nodeLimit;
+            racers[i].radius = radius;
+            if (cancelled) {
+                racers[i].cancel();
+            }
+            int k = i;
+            State racerStart = s, racerGoal = g;
+            done.submit(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    answers[k] = racers[k].search(racerStart, racerGoal);
+                } finally {
+                    times[k] = System.nanoTime() - startTime;
+                }
+                return k;
+            });
+        }
+        int winner = -1;
+        try {
+            for (int i = 0; i < n && winner < 0; i++) {
+                try {
+                    winner = done.take().get();
+                } catch (ExecutionException e) {
+                    // this algorithm failed (like running out of memory), the others keep running
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Algo racer : racers) {
+                racer.cancel();
+            }
+            pool.shutdown();
+        }
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (winner < 0) {
+            throw new CancellationException("no algorithm of the portfolio finished");
+        }
+        StringBuilder report = new StringBuilder("Winner: " + portfolio[winner]);
+        for (int i = 0; i < n; i++) {
+            report.append(i == 0 ? " (" : ", ").append(portfolio[i]).append(" ")
+                    .append((double) times[i] / 1_000_000_000).append(" seconds")
+                    .append(i == winner ? "" : answers[i] == null ? " cancelled" : " finished");
+        }
+        details = report.append(")").toString();
+        numOfStates = racers[winner].numOfStates;
+        cost = racers[winner].cost;
+        return answers[winner];
+    }
+
+    /**
+     * Auto Algorithm: runs the algorithm and the heuristic function that AutoPolicy picks for the instance
+     * (by the size of the board, the number of empty blocks, the heuristic value of the start board,
+     * the heap size and the number of processors)
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String Auto(State start, State goal) {
+        String[] choice = AutoPolicy.select(start, goal).split(":");
+        PuzzleStateAlgo.Heuristic h = PuzzleStateAlgo.Heuristic.valueOf(choice[1]);
+        Algo chosen = new Algo(choice[0], false, false);
+        chosen.weight = weight;
+        chosen.nodeLimit = nodeLimit;
+        chosen.radius = radius;
+        chosen.portfolio = portfolio;
+        racers = new Algo[]{chosen};
+        if (cancelled) {
+            chosen.cancel();
+        }
+        String ans;
+        try {
+            ans = chosen.search(withHeuristic(start, goal, h), withHeuristic(goal, goal, h));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        numOfStates = chosen.numOfStates;
+        cost = chosen.cost;
+        details = "Auto: " + choice[0] + ":" + choice[1] + (chosen.details == null ? "" : ", " + chosen.details);
+        return ans;
+    }
+
+    /**
+     * @return a root State of the board of the State with the given heuristic function
+     */
+    private static State withHeuristic(State s, State goal, PuzzleStateAlgo.Heuristic h) {
+        return new PuzzleState(s.getCurBoard(), s.getNumOfRows(), s.getNumOfCols(), s.getNumOfEmptyBlocks(),
+                0, goal.getCurBoard(), h);
+    }
+
+    /**
+     * The frame of the bidirectional searches. The side whose next State comes first by 'order' is expanded.
+     * Every time a board is reached by both searches, the cost of the path through it is a candidate for the
+     * best path 'mu', and the search stops when 'lowerBound' of the next States of the two sides
+     * (a lower bound on the cost of any path that was not seen yet) is at least 'mu'.
+     * @param start      - start State
+     * @param back       - the root of the backward search (a State with the goal board)
+     * @param order      - The order of the open lists
+     * @param lowerBound - A lower bound on the cost of the paths not seen yet, given the next States
+     *                     of the forward and the backward open lists
+     * @param pathBound  - A lower bound on the cost of the paths through a State,
+     *                     States that can't improve 'mu' are not added to the open lists
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    private String bidirectional(State start, State back, Comparator<State> order,
+                                 ToIntBiFunction<State, State> lowerBound, ToIntFunction<State> pathBound) {
+        numOfStates = 0;
+        int expandedF = 0, expandedB = 0;
+        PriorityQueue<State> qF = new PriorityQueue<>(order);
+        PriorityQueue<State> qB = new PriorityQueue<>(order);
+        Hashtable<PackedBoard, State> openF = new Hashtable<>();  // the cheapest known State of each board
+        Hashtable<PackedBoard, State> openB = new Hashtable<>();
+        qF.add(start);
+        openF.put(start.getPacked(), start);
+        qB.add(back);
+        openB.put(back.getPacked(), back);
+        numOfStates += 2;
+        int mu = Integer.MAX_VALUE;
+        State meetF = null, meetB = null;
+        if (start.equals(back)) {
+            mu = 0;
+            meetF = start;
+            meetB = back;
+        }
+        while (!qF.isEmpty() && !qB.isEmpty()) {
+            checkCancelled();
+            handleOpenList(openF);
+            if (lowerBound.applyAsInt(qF.peek(), qB.peek()) >= mu) {
+                break;
+            }
+            boolean forward = order.compare(qF.peek(), qB.peek()) <= 0;
+            PriorityQueue<State> q = forward ? qF : qB;
+            Hashtable<PackedBoard, State> open = forward ? openF : openB;
+            Hashtable<PackedBoard, State> other = forward ? openB : openF;
+            State current = q.poll();
+            if (open.get(current.getPacked()) != current) {
+                continue;   // a cheaper copy of this board was found after this one was added
+            }
+            if (forward) {
+                expandedF++;
+            } else {
+                expandedB++;
+            }
+            ArrayList<State> suc = current.genSuccessors();
+            for (State next : suc) {
+                numOfStates++;
+                State known = open.get(next.getPacked());
+                if (known != null && known.getCost(false) <= next.getCost(false)) {
+                    continue;
+                }
+                State same = other.get(next.getPacked());
+                if (same != null && next.getCost(false) + same.getCost(false) < mu) {
+                    mu = next.getCost(false) + same.getCost(false);
+                    meetF = forward ? next : same;
+                    meetB = forward ? same : next;
+                }
+                if (pathBound.applyAsInt(next) < mu) {
+                    open.put(next.getPacked(), next);
+                    q.add(next);
+                }
+            }
+        }
+        details = "Expanded: " + expandedF + " forward, " + expandedB + " backward";
+        if (meetF == null) {
+            return "no path";
+        }
+        cost = mu;
+        String path = meetF.getStringPath();
+        String backPath = PuzzleState.reversePath(meetB.getStringPath());
+        if (path.isEmpty() || backPath.isEmpty()) {
+            return path + backPath;
+        }
+        return path + "-" + backPath;
+    }
+
+    /**
+     * Throws a CancellationException if the algorithm was cancelled
+     */
+    private void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException(algo + " was cancelled");
+        }
+    }
+
     /**
      * Handles the open list, if the 'withOpen' value is true it will call the 'print' method that will print
      * the list to the screen
      * @param h - Hashtable that represents the open list
      */
-    private void handleOpenList(Hashtable<String, State> h) {
+    private void handleOpenList(Hashtable<PackedBoard, State> h) {
         if(withOpen){ print(h); }
     }
 
@@ -356,12 +1721,12 @@ public class Algo {
      * print the list (Hashtable values) to the screen
      * @param h - Hashtable that represents the open list
      */
-    private void print(Hashtable<String, State> h){
+    private void print(Hashtable<PackedBoard, State> h){
         System.out.println("\nOpen List:");
         if(h.isEmpty()){
             System.out.println("empty...");
         }
-        for (Map.Entry<String, State> entry : h.entrySet()) {
+        for (Map.Entry<PackedBoard, State> entry : h.entrySet()) {
             System.out.println(entry.getValue());
         }
     }
@@ -0,0 +1,68 @@
+/**
+ * The policy of the Auto Algorithm: picks an algorithm and a heuristic function for an instance from cheap
+ * features of the instance and of the machine (the number of cells, the number of empty blocks,
+ * the Manhattan distance heuristic of the start board, the maximal heap size and the number of processors).
+ * The policy is a small table, the first row that matches the instance is used. It was made from the runs
+ * of A*, IDA*, DFBnB, MM and Anytime Weighted A* on random walk instances (3x3 up to 5x5, one and two empty
+ * blocks, 1GB heap, 15 seconds per run):
+ * - with one empty block IDA* was always the fastest (A* runs out of time on the deep 4x4 instances),
+ *   larger boards (6x6 and up) were not measured, there only Weighted A* finishes in time, so they get it,
+ * - with two empty blocks IDA* is slow (the pair moves make many paths to every board) and A* is the fastest,
+ *   but on 4x4 it runs out of time above a Manhattan distance of about 75 (and on 4x5 and 5x5 above 60),
+ *   where only Anytime Weighted A* finds a (not always optimal) solution, with a bounded number of States.
+ *
+ * @author Itai Lashover
+ */
+public final class AutoPolicy {
+
+    /**
+     * The rows of the policy: max cells, empty blocks (0 for any number), max Manhattan distance,
+     * min heap (MB), min processors, algorithm:heuristic
+     */
+    private static final String[] table = {
+            "9      2   1000  64    1  AStar:MAX",
+            "25     1   1000  64    1  IDAStar:MAX",
+            "1000   1   1000  0     1  WAStar:MAX",
+            "16     2   90    1024  4  Portfolio:MAX",
+            "12     2   1000  512   1  AStar:MAX",
+            "16     2   75    1024  1  AStar:MAX",
+            "16     2   1000  256   1  WAStar:MAX",
+            "1000   2   60    1024  1  AStar:MANHATTAN",
+            "12     0   1000  512   1  AStar:MANHATTAN",
+            "1000   0   1000  0     1  WAStar:MANHATTAN",
+    };
+
+    private AutoPolicy() {
+    }
+
+    /**
+     * @param start - The start State
+     * @param goal  - The goal State
+     * @return the algorithm and the heuristic function for the instance, like "IDAStar:MAX"
+     */
+    public static String select(State start, State goal) {
+        int cells = start.getNumOfRows() * start.getNumOfCols();
+        int emptyBlocks = start.getNumOfEmptyBlocks();
+        int manhattan = new PuzzleState(start.getCurBoard(), start.getNumOfRows(), start.getNumOfCols(),
+                emptyBlocks, 0, goal.getCurBoard()).getCost(true);
+        long heap = Runtime.getRuntime().maxMemory() >> 20;
+        int processors = Runtime.getRuntime().availableProcessors();
+        return select(cells, emptyBlocks, manhattan, heap, processors);
+    }
+
+    /**
+     * @return the algorithm and the heuristic function of the first row of the table that matches the features
+     */
+    static String select(int cells, int emptyBlocks, int manhattan, long heap, int processors) {
+        for (String row : table) {
+            String[] col = row.trim().split("\\s+");
+            int blocks = Integer.parseInt(col[1]);
+            if (cells <= Integer.parseInt(col[0]) && (blocks == 0 || blocks == emptyBlocks)
+                    && manhattan <= Integer.parseInt(col[2]) && heap >= Long.parseLong(col[3])
+                    && processors >= Integer.parseInt(col[4])) {
+                return col[5];
+            }
+        }
+        return "WAStar:MANHATTAN";
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Small timing harness that compares the scalar heuristic path (one PuzzleState at a time)
+ * with the batch heuristic path (many boards in one call), and the expansions of PuzzleState
+ * (int array boards) with those of BitState (boards packed into a long, up to 16 cells).
+ * Usage: java Bench [rows] [cols] [boards] [rounds]
+ *
+ * @author Itai Lashover
+ */
+public class Bench {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int m = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int numOfBoards = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int[] goal = new int[n * m];
+        for (int i = 0; i < goal.length - 1; i++) {
+            goal[i] = i + 1;
+        }
+        int[][] boards = randomWalks(goal, n, m, numOfBoards, new Random(1));
+        PuzzleState[] states = new PuzzleState[numOfBoards];
+        for (int i = 0; i < numOfBoards; i++) {
+            states[i] = new PuzzleState(boards[i], n, m, 1, 0, goal);
+        }
+        BitState[] bitStates = null;
+        if (BitState.fits(goal)) {
+            bitStates = new BitState[numOfBoards];
+            for (int i = 0; i < numOfBoards; i++) {
+                bitStates[i] = new BitState(boards[i], n, m, 1, 0, goal);
+            }
+        }
+        long check = 0;
+        for (int r = 0; r < rounds; r++) {
+            long scalar = System.nanoTime();
+            for (PuzzleState s : states) {
+                check += new PuzzleStateAlgo(s, goal).manhattan(5);
+            }
+            scalar = System.nanoTime() - scalar;
+            long batch = System.nanoTime();
+            for (int h : PuzzleStateAlgo.manhattan(boards, n, m, goal, 5)) {
+                check -= h;
+            }
+            batch = System.nanoTime() - batch;
+            System.out.printf("round %d: scalar %.1f ns/board, batch %.1f ns/board%n",
+                    r, (double) scalar / numOfBoards, (double) batch / numOfBoards);
+            if (bitStates != null) {
+                long ints = System.nanoTime();
+                for (PuzzleState s : states) {
+                    for (State next : s.genSuccessors()) {
+                        check += next.getCost(true);
+                    }
+                }
+                ints = System.nanoTime() - ints;
+                long bits = System.nanoTime();
+                for (BitState s : bitStates) {
+                    for (State next : s.genSuccessors()) {
+                        check -= next.getCost(true);
+                    }
+                }
+                bits = System.nanoTime() - bits;
+                System.out.printf("round %d: PuzzleState %.1f ns/expansion, BitState %.1f ns/expansion%n",
+                        r, (double) ints / numOfBoards, (double) bits / numOfBoards);
+            }
+        }
+        if (check != 0) {
+            System.out.println("scalar and batch (or PuzzleState and BitState) results differ!");
+        }
+    }
+
+    /**
+     * @return boards created by random walks of 100 moves from the goal board
+     */
+    static int[][] randomWalks(int[] goal, int n, int m, int numOfBoards, Random rnd) {
+        int[][] boards = new int[numOfBoards][];
+        for (int i = 0; i < numOfBoards; i++) {
+            State s = new PuzzleState(goal.clone(), n, m, 1, 0, goal);
+            for (int j = 0; j < 100; j++) {
+                ArrayList<State> suc = s.genSuccessors();
+                s = suc.get(rnd.nextInt(suc.size()));
+            }
+            boards[i] = s.getCurBoard();
+        }
+        return boards;
+    }
+}
@@ -0,0 +1,481 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BitState is a State of boards up to 16 cells (up to 4x4) whose board is a single long, 4 bits per tile
+ * (tiles up to 15), so the moves are applied with shifts and XORs instead of copying an int array:
+ * moving the tile t from the cell c into the empty block e is bits ^ (t << 4c) ^ (t << 4e).
+ * The empty blocks are found by a bit trick (the nibbles that have no bit set), the goal test compares
+ * two longs, and the Zobrist hash, the Manhattan distance and the linear conflicts are updated from the
+ * previous State as in PuzzleState. The heuristic function is MANHATTAN (Manhattan distance and linear
+ * conflict), the successors are generated in the same order and with the same costs as in PuzzleState,
+ * so it can replace PuzzleState in all the algorithms (the board array is unpacked only when asked for).
+ *
+ * @author Itai Lashover
+ */
+public final class BitState implements State, Comparable<State> {
+
+    public static final int MAX_CELLS = 16;
+    private static final long LOW_BITS = 0x1111111111111111L;    // the lowest bit of every nibble
+    private static final AtomicInteger uniqueKey = new AtomicInteger();
+
+    /**
+     * The goal board and the tables of the heuristic function, shared by all the States of a search
+     */
+    private static final class Goal {
+        final int numOfRows;
+        final int numOfCols;
+        final int numOfEmptyBlocks;
+        final int[] board;
+        final long bits;
+        final long cells;           // the lowest bit of the nibbles of the board cells
+        final long[] steps;         // the packed tile steps (see PuzzleStateAlgo.dirSteps) of every tile in every cell
+        final int[] goalRow;
+        final int[] goalCol;
+
+        Goal(int[] board, int n, int m, int emptyBlocks) {
+            if (!fits(board)) {
+                throw new IllegalArgumentException("boards up to " + MAX_CELLS + " cells and tiles up to 15 can be packed");
+            }
+            this.numOfRows = n;
+            this.numOfCols = m;
+            this.numOfEmptyBlocks = emptyBlocks;
+            this.board = board;
+            this.bits = pack(board);
+            this.cells = board.length == MAX_CELLS ? LOW_BITS : LOW_BITS & ((1L << 4 * board.length) - 1);
+            this.steps = new long[MAX_CELLS * MAX_CELLS];
+            this.goalRow = new int[MAX_CELLS];
+            this.goalCol = new int[MAX_CELLS];
+            for (int i = 0; i < board.length; i++) {
+                goalRow[board[i]] = i / m;
+                goalCol[board[i]] = i % m;
+            }
+            for (int tile = 1; tile < MAX_CELLS; tile++) {
+                for (int cell = 0; cell < board.length; cell++) {
+                    int dx = goalCol[tile] - cell % m;
+                    int dy = goalRow[tile] - cell / m;
+                    steps[tile * MAX_CELLS + cell] =
+                            (dx < 0 ? -dx : (long) dx << 16) | (dy < 0 ? (long) -dy << 32 : (long) dy << 48);
+                }
+            }
+        }
+    }
+
+    private final int id;
+    private final long bits;
+    private final Goal goal;
+    private final int cost;
+    private final long hash;
+    private final long dirSteps;
+    private final int rowConflicts;
+    private final int colConflicts;
+    private final BitState pre;
+    private final int lastStep;     // first tile, second tile (0 for a single tile) and direction, 8 bits each
+    private boolean out = false;
+    private int[] board = null;
+    private PackedBoard packed = null;
+
+    /**
+     * Constructor for BitState
+     * @param board       - An array that represent the puzzle state (up to 16 cells)
+     * @param n           - Number of rows in the Puzzle
+     * @param m           - Number of column in the Puzzle
+     * @param emptyBlocks - Number of empty blocks in the Puzzle
+     * @param cost        - The total cost to reach this state
+     * @param goal        - The goal board
+     */
+    public BitState(int[] board, int n, int m, int emptyBlocks, int cost, int[] goal) {
+        this(board, cost, new Goal(goal, n, m, emptyBlocks));
+    }
+
+    private BitState(int[] board, int cost, Goal goal) {
+        if (!fits(board) || board.length != goal.board.length) {
+            throw new IllegalArgumentException("boards up to " + MAX_CELLS + " cells and tiles up to 15 can be packed");
+        }
+        this.id = uniqueKey.getAndIncrement();
+        this.bits = pack(board);
+        this.goal = goal;
+        this.cost = cost;
+        this.hash = Zobrist.hash(board);
+        long steps = 0;
+        for (int cell = 0; cell < board.length; cell++) {
+            if (board[cell] != 0) {
+                steps += goal.steps[board[cell] * MAX_CELLS + cell];
+            }
+        }
+        this.dirSteps = steps;
+        int rows = 0, cols = 0;
+        for (int i = 0; i < goal.numOfRows; i++) {
+            rows += rowConflicts(bits, i);
+        }
+        for (int i = 0; i < goal.numOfCols; i++) {
+            cols += colConflicts(bits, i);
+        }
+        this.rowConflicts = rows;
+        this.colConflicts = cols;
+        this.pre = null;
+        this.lastStep = 0;
+        this.board = board;
+    }
+
+    private BitState(BitState pre, long bits, int cost, long hash, long dirSteps, int rowConflicts,
+                     int colConflicts, int lastStep) {
+        this.id = uniqueKey.getAndIncrement();
+        this.bits = bits;
+        this.goal = pre.goal;
+        this.cost = cost;
+        this.hash = hash;
+        this.dirSteps = dirSteps;
+        this.rowConflicts = rowConflicts;
+        this.colConflicts = colConflicts;
+        this.pre = pre;
+        this.lastStep = lastStep;
+    }
+
+    /**
+     * @param board - An array that represent the puzzle state
+     * @return true if the board can be packed into a long
+     */
+    public static boolean fits(int[] board) {
+        if (board.length > MAX_CELLS) {
+            return false;
+        }
+        for (int tile : board) {
+            if (tile < 0 || tile >= MAX_CELLS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long pack(int[] board) {
+        long bits = 0;
+        for (int i = 0; i < board.length; i++) {
+            bits |= (long) board[i] << 4 * i;
+        }
+        return bits;
+    }
+
+    private static int tile(long bits, int cell) {
+        return (int) (bits >>> 4 * cell) & 0xF;
+    }
+
+    /**
+     * @return the lowest bit of every nibble of the board that is 0 (an empty block)
+     */
+    private long holes() {
+        long set = bits | bits >>> 1 | bits >>> 2 | bits >>> 3;
+        return ~set & goal.cells;
+    }
+
+    @Override
+    public ArrayList<State> genSuccessors() {
+        ArrayList<State> successors = new ArrayList<>();
+        long holes = holes();
+        int hole0 = Long.numberOfTrailingZeros(holes) >>> 2;
+        if (goal.numOfEmptyBlocks == 1) {
+            genSuccessors1(successors, hole0);
+        } else if (goal.numOfEmptyBlocks == 2) {
+            int hole1 = Long.numberOfTrailingZeros(holes & (holes - 1)) >>> 2;
+            int m = goal.numOfCols;
+            if (hole0 + m == hole1) {      // vertically adjacent
+                if (hole0 % m != m - 1) {
+                    move2(successors, hole0 + 1, hole0, hole1 + 1, hole1, 6, 'L');
+                }
+                if (hole0 % m != 0) {
+                    move2(successors, hole0 - 1, hole0, hole1 - 1, hole1, 6, 'R');
+                }
+            } else if (hole0 + 1 == hole1 && hole0 / m == hole1 / m) {   // horizontally adjacent
+                if (hole0 < (goal.numOfRows - 1) * m) {
+                    move2(successors, hole0 + m, hole0, hole1 + m, hole1, 7, 'U');
+                }
+                if (hole0 >= m) {
+                    move2(successors, hole0 - m, hole0, hole1 - m, hole1, 7, 'D');
+                }
+            }
+            genSuccessors1(successors, hole0);
+            genSuccessors1(successors, hole1);
+        }
+        return successors;
+    }
+
+    /**
+     * Adds the States reached by moving a single tile into the empty block (left, up, right and down,
+     * as in PuzzleState)
+     */
+    private void genSuccessors1(ArrayList<State> successors, int hole) {
+        int m = goal.numOfCols;
+        if (hole % m != m - 1) {
+            move(successors, hole + 1, hole, 'L');
+        }
+        if (hole < (goal.numOfRows - 1) * m) {
+            move(successors, hole + m, hole, 'U');
+        }
+        if (hole % m != 0) {
+            move(successors, hole - 1, hole, 'R');
+        }
+        if (hole >= m) {
+            move(successors, hole - m, hole, 'D');
+        }
+    }
+
+    private void move(ArrayList<State> successors, int from, int to, char direction) {
+        int t = tile(bits, from);
+        if (t == 0 || stepBack(t, 0, direction)) {
+            return;
+        }
+        long child = bits ^ (long) t << 4 * from ^ (long) t << 4 * to;
+        long h = hash ^ Zobrist.key(t, from) ^ Zobrist.key(0, to) ^ Zobrist.key(t, to) ^ Zobrist.key(0, from);
+        long steps = dirSteps - goal.steps[t * MAX_CELLS + from] + goal.steps[t * MAX_CELLS + to];
+        successors.add(withConflicts(child, cost + 5, h, steps, from, to, step(t, 0, direction)));
+    }
+
+    private void move2(ArrayList<State> successors, int from1, int to1, int from2, int to2, int cost, char direction) {
+        int t1 = tile(bits, from1), t2 = tile(bits, from2);
+        if (stepBack(t1, t2, direction)) {
+            return;
+        }
+        long child = bits ^ (long) t1 << 4 * from1 ^ (long) t1 << 4 * to1 ^ (long) t2 << 4 * from2 ^ (long) t2 << 4 * to2;
+        long h = hash ^ Zobrist.key(t1, from1) ^ Zobrist.key(0, to1) ^ Zobrist.key(t1, to1) ^ Zobrist.key(0, from1)
+                ^ Zobrist.key(t2, from2) ^ Zobrist.key(0, to2) ^ Zobrist.key(t2, to2) ^ Zobrist.key(0, from2);
+        long steps = dirSteps - goal.steps[t1 * MAX_CELLS + from1] + goal.steps[t1 * MAX_CELLS + to1]
+                - goal.steps[t2 * MAX_CELLS + from2] + goal.steps[t2 * MAX_CELLS + to2];
+        successors.add(withConflicts(child, this.cost + cost, h, steps, from1, to1, step(t1, t2, direction)));
+    }
+
+    /**
+     * @return the successor, with the linear conflicts updated only in the lines that the move crosses
+     */
+    private BitState withConflicts(long child, int cost, long h, long steps, int from, int to, int step) {
+        int m = goal.numOfCols;
+        if (from / m == to / m) {
+            int lc = colConflicts(child, from % m) + colConflicts(child, to % m)
+                    - colConflicts(bits, from % m) - colConflicts(bits, to % m);
+            return new BitState(this, child, cost, h, steps, rowConflicts, colConflicts + lc, step);
+        }
+        int lc = rowConflicts(child, from / m) + rowConflicts(child, to / m)
+                - rowConflicts(bits, from / m) - rowConflicts(bits, to / m);
+        return new BitState(this, child, cost, h, steps, rowConflicts + lc, colConflicts, step);
+    }
+
+    private static int step(int t1, int t2, char direction) {
+        return t1 | t2 << 8 | direction << 16;
+    }
+
+    /**
+     * @return true if the move takes back the last step (one of its tiles in the opposite direction),
+     *         the same moves that PuzzleState does not generate
+     */
+    private boolean stepBack(int t1, int t2, char direction) {
+        if (lastStep == 0 || (char) (lastStep >>> 16) != reverse(direction)) {
+            return false;
+        }
+        int last1 = lastStep & 0xFF, last2 = (lastStep >>> 8) & 0xFF;
+        if (t2 == 0) {
+            return t1 == last1 || t1 == last2;
+        }
+        return t1 == last1 && t2 == last2;
+    }
+
+    private static char reverse(char direction) {
+        switch (direction) {
+            case 'R': return 'L';
+            case 'L': return 'R';
+            case 'U': return 'D';
+            default: return 'U';
+        }
+    }
+
+    /**
+     * The linear conflicts of a row, counted as in PuzzleStateAlgo
+     */
+    private int rowConflicts(long bits, int i) {
+        int m = goal.numOfCols, numOfConflicts = 0;
+        for (int j = 0; j < m; j++) {
+            int val = tile(bits, i * m + j);
+            if (val == 0 || goal.goalRow[val] != i) {
+                continue;
+            }
+            for (int k = j + 1; k < m; k++) {
+                int val2 = tile(bits, i * m + k);
+                if (val2 != 0 && goal.goalRow[val2] == i && goal.goalCol[val] > goal.goalCol[val2]) {
+                    numOfConflicts++;
+                    j = k - 1;
+                    break;
+                }
+            }
+        }
+        return numOfConflicts;
+    }
+
+    /**
+     * The linear conflicts of a column, counted as in PuzzleStateAlgo
+     */
+    private int colConflicts(long bits, int i) {
+        int n = goal.numOfRows, m = goal.numOfCols, numOfConflicts = 0;
+        for (int j = 0; j < n; j++) {
+            int val = tile(bits, j * m + i);
+            if (val == 0 || goal.goalCol[val] != i) {
+                continue;
+            }
+            for (int k = j + 1; k < n; k++) {
+                int val2 = tile(bits, k * m + i);
+                if (val2 != 0 && goal.goalCol[val2] == i && goal.goalRow[val] > goal.goalRow[val2]) {
+                    numOfConflicts++;
+                    j = k - 1;
+                    break;
+                }
+            }
+        }
+        return numOfConflicts;
+    }
+
+    /**
+     * @param goalState - The goal board
+     * @return true if the board of this State is the goal board (a single compare for the goal of the search)
+     */
+    @Override
+    public boolean isGoal(int[] goalState) {
+        if (goalState == goal.board) {
+            return bits == goal.bits;
+        }
+        return Arrays.equals(getCurBoard(), goalState);
+    }
+
+    @Override
+    public int getCost(boolean withHeuristic) {
+        return withHeuristic ? getCheapCost() : cost;
+    }
+
+    @Override
+    public int getCheapCost() {
+        if (goal.numOfEmptyBlocks == 1) {
+            return cost + PuzzleStateAlgo.manhattanSteps(dirSteps) * 5 + (rowConflicts + colConflicts) * 2 * 5;
+        }
+        return cost + PuzzleStateAlgo.twoBlanksBound(dirSteps, rowConflicts, colConflicts);
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the packed board, equal to the packed board of a PuzzleState with the same board
+     */
+    @Override
+    public PackedBoard getPacked() {
+        if (packed == null) {
+            packed = PackedBoard.ofNibbles(bits, goal.board.length, hash);
+        }
+        return packed;
+    }
+
+    @Override
+    public State toward(int[] target) {
+        return new BitState(getCurBoard(), 0, new Goal(target, goal.numOfRows, goal.numOfCols, goal.numOfEmptyBlocks));
+    }
+
+    @Override
+    public void printState() {
+        for (int i = 0; i < goal.numOfRows; i++) {
+            StringBuilder row = new StringBuilder(" | ");
+            for (int j = 0; j < goal.numOfCols; j++) {
+                row.append(tile(bits, j + i * goal.numOfCols)).append(" | ");
+            }
+            System.out.println(row);
+            System.out.println("---------");
+        }
+    }
+
+    @Override
+    public boolean equals(State s) {
+        return hash == s.getHash() && Arrays.equals(getCurBoard(), s.getCurBoard());
+    }
+
+    /**
+     * @return the board unpacked into an array (created on the first call)
+     */
+    @Override
+    public int[] getCurBoard() {
+        if (board == null) {
+            int[] b = new int[goal.board.length];
+            for (int i = 0; i < b.length; i++) {
+                b[i] = tile(bits, i);
+            }
+            board = b;
+        }
+        return board;
+    }
+
+    @Override
+    public int getNumOfRows() {
+        return goal.numOfRows;
+    }
+
+    @Override
+    public int getNumOfCols() {
+        return goal.numOfCols;
+    }
+
+    @Override
+    public int getNumOfEmptyBlocks() {
+        return goal.numOfEmptyBlocks;
+    }
+
+    @Override
+    public ArrayList<State> getPath() {
+        ArrayList<State> path = new ArrayList<>();
+        for (BitState s = this; s != null; s = s.pre) {
+            path.add(s);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    @Override
+    public String getStringPath() {
+        ArrayList<String> steps = new ArrayList<>();
+        for (BitState s = this; s.pre != null; s = s.pre) {
+            int t2 = (s.lastStep >>> 8) & 0xFF;
+            steps.add((s.lastStep & 0xFF) + (t2 == 0 ? "" : "&" + t2) + (char) (s.lastStep >>> 16));
+        }
+        Collections.reverse(steps);
+        return String.join("-", steps);
+    }
+
+    @Override
+    public int getId() {
+        return id;
+    }
+
+    @Override
+    public boolean getOut() {
+        return out;
+    }
+
+    @Override
+    public void setOut(boolean b) {
+        out = b;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(getCurBoard());
+    }
+
+    /**
+     * Compares two States according to their costs (with the heuristic function), and then by their ids,
+     * as PuzzleState does
+     */
+    @Override
+    public int compareTo(State o) {
+        int f = getCost(true), of = o.getCost(true);
+        if (f != of) {
+            return f < of ? -1 : 1;
+        }
+        return getId() < o.getId() ? -1 : 1;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Approximate duplicate detection in a fixed number of bits (bitstate hashing, like the supertrace of model
+ * checkers): a board is a set of k bits of a large bit array (a Bloom filter), chosen by the 64 bit Zobrist hash
+ * of the board (double hashing), and it is "seen" if all its bits are set. A board that was never seen may be
+ * pruned by mistake when its bits were all set by other boards, so a search that uses it may miss some boards
+ * (and paths), but a board takes k bits instead of a table entry of dozens of bytes.
+ * The table estimates the chance of such misses from the number of boards in it.
+ *
+ * @author Itai Lashover
+ */
+public final class BitstateTable {
+
+    private final long[] words;
+    private final long mask;
+    private final int hashes;
+    private long count = 0;
+    private double expectedOmissions = 0;  // the sum of the false positive rates when the new boards were added
+
+    /**
+     * Constructor for BitstateTable
+     * @param log2Bits - The log2 of the number of bits (up to 36, 8GB)
+     * @param hashes   - The number of bits of every board
+     */
+    public BitstateTable(int log2Bits, int hashes) {
+        if (log2Bits < 6 || log2Bits > 36) {
+            throw new IllegalArgumentException("the table has 2^6 to 2^36 bits");
+        }
+        this.words = new long[1 << (log2Bits - 6)];
+        this.mask = (1L << log2Bits) - 1;
+        this.hashes = Math.max(1, hashes);
+    }
+
+    /**
+     * Marks a board as seen
+     * @param hash - The Zobrist hash of the board
+     * @return true if the board was not seen before (not all its bits were set)
+     */
+    public boolean add(long hash) {
+        long h2 = mix(hash) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (hash + i * h2) & mask;
+            int w = (int) (bit >>> 6);
+            long b = 1L << (bit & 63);
+            if ((words[w] & b) == 0) {
+                words[w] |= b;
+                added = true;
+            }
+        }
+        if (added) {
+            expectedOmissions += falsePositiveRate();  // the chance that this board would have been pruned
+            count++;
+        }
+        return added;
+    }
+
+    /**
+     * @param hash - The Zobrist hash of the board
+     * @return true if the board was seen (or all its bits were set by other boards)
+     */
+    public boolean contains(long hash) {
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (hash + i * h2) & mask;
+            if ((words[(int) (bit >>> 6)] & 1L << (bit & 63)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the number of boards in the table
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @return the chance that a new board is taken for a seen one: (1 - e^(-kn/m))^k
+     */
+    public double falsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * count / (mask + 1)), hashes);
+    }
+
+    /**
+     * @return the estimated chance that at least one board was pruned by mistake so far
+     */
+    public double omissionProbability() {
+        return -Math.expm1(-expectedOmissions);    // accurate also when it is tiny (1 - e^-x rounds to 0)
+    }
+
+    /**
+     * @return the memory of the table in bytes
+     */
+    public long bytes() {
+        return (long) words.length * 8;
+    }
+}
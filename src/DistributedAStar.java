@@ -0,0 +1,582 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.PriorityQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hash distributed A* over several JVM processes, for instances whose A* does not fit in the heap of one JVM.
+ * Every board is owned by one worker process (by the Zobrist hash of the board), and each worker keeps the
+ * open and closed lists of its own boards. A worker expands its best boards and sends the successors that
+ * other workers own to them, in batches of binary frames over TCP (every two workers are connected).
+ * A coordinator (the process that runs the Algo) starts the workers (or connects to running ones), and
+ * probes them until they are all idle and every sent board was received, twice in a row with the same
+ * counts; the cheapest goal cost found by then is the optimal cost. With every probe the workers also get
+ * the lowest f value of all the open lists, and expand only up to a small window above it.
+ * The path is built back from the goal by asking the owner of every board for its parent board.
+ * A worker process is started with "java DistributedAStar worker [port] [once] [bind address]", prints the
+ * port it listens on and serves one search after the other (with "once" it exits after the first search).
+ * A worker listens only on the loopback address, unless it is given an address with "bind" (for workers
+ * on other machines).
+ *
+ * @author Itai Lashover
+ */
+public final class DistributedAStar {
+
+    private static final byte INIT = 1;
+    private static final byte NODES = 2;
+    private static final byte PROBE = 3;
+    private static final byte STATUS = 4;
+    private static final byte TRACE = 5;
+    private static final byte PARENT = 6;
+    private static final byte STOP = 7;
+    private static final int BATCH = 256;           // the boards in a full NODES frame
+    private static final int EXPANSIONS = 1024;     // the expansions between two checks of the incoming frames
+    private static final int WINDOW = 10;           // how far above the lowest f value of all the workers a worker
+                                                    // may expand (otherwise it expands boards no A* would expand)
+
+    private final int processes;
+    private final String[] workers;
+    private final PuzzleStateAlgo.Heuristic heuristic;
+    private int numOfStates;
+    private int cost;
+
+    /**
+     * Constructor for DistributedAStar
+     * @param processes - The number of worker processes to start on this machine (if workers is null)
+     * @param workers   - The "host:port" addresses of running workers, or null to start local ones
+     * @param heuristic - The heuristic function of the workers
+     */
+    public DistributedAStar(int processes, String[] workers, PuzzleStateAlgo.Heuristic heuristic) {
+        this.processes = workers == null ? processes : workers.length;
+        this.workers = workers;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * @return the number of States generated by all the workers in the last search
+     */
+    public int getNumOfStates() {
+        return numOfStates;
+    }
+
+    /**
+     * @return the cost of the path of the last search
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    /**
+     * @return the worker that owns the board
+     */
+    private static int owner(int[] board, int n) {
+        long h = Zobrist.hash(board);
+        h ^= h >>> 31;  // the low bits of the Zobrist hash also pick the table buckets of the worker
+        return (int) Long.remainderUnsigned(h * 0x9E3779B97F4A7C15L, n);
+    }
+
+    private static void writeBoard(DataOutputStream out, int[] board) throws IOException {
+        for (int tile : board) {
+            out.writeByte(tile);
+        }
+    }
+
+    private static int[] readBoard(DataInputStream in, int size) throws IOException {
+        int[] board = new int[size];
+        for (int i = 0; i < size; i++) {
+            board[i] = in.readUnsignedByte();
+        }
+        return board;
+    }
+
+    private static DataOutputStream output(Socket socket) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    private static DataInputStream input(Socket socket) throws IOException {
+        return new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+    /**
+     * Searches the cheapest path with the workers
+     * @param start - start State
+     * @param goal  - goal State
+     * @return The order of operations from the start State to the goal State as a string,
+     *         If there is no such route the method will return "no path"
+     */
+    public String search(State start, State goal) throws IOException {
+        ArrayList<Process> started = new ArrayList<>();
+        String[] addresses = workers;
+        if (addresses == null) {
+            addresses = new String[processes];
+            String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+            for (int i = 0; i < processes; i++) {
+                Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        "DistributedAStar", "worker", "0", "once")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                started.add(p);
+                String port = new BufferedReader(new InputStreamReader(p.getInputStream())).readLine();
+                addresses[i] = InetAddress.getLoopbackAddress().getHostAddress() + ":" + port;
+            }
+        }
+        Socket[] sockets = new Socket[processes];
+        DataOutputStream[] outs = new DataOutputStream[processes];
+        DataInputStream[] ins = new DataInputStream[processes];
+        try {
+            for (int i = 0; i < processes; i++) {
+                String[] hostPort = addresses[i].split(":");
+                sockets[i] = new Socket(hostPort[0], Integer.parseInt(hostPort[1]));
+                outs[i] = output(sockets[i]);
+                ins[i] = input(sockets[i]);
+            }
+            int rows = start.getNumOfRows(), cols = start.getNumOfCols(), size = rows * cols;
+            for (int i = 0; i < processes; i++) {
+                outs[i].writeByte(INIT);
+                outs[i].writeInt(i);
+                outs[i].writeInt(processes);
+                for (String address : addresses) {
+                    outs[i].writeUTF(address);
+                }
+                outs[i].writeInt(rows);
+                outs[i].writeInt(cols);
+                outs[i].writeInt(start.getNumOfEmptyBlocks());
+                outs[i].writeInt(heuristic.ordinal());
+                writeBoard(outs[i], start.getCurBoard());
+                writeBoard(outs[i], goal.getCurBoard());
+                outs[i].flush();
+            }
+            // probe until all the workers are idle with no boards on the way, twice with the same counts
+            int incumbent = Integer.MAX_VALUE;
+            int floor = start.getCost(true);
+            long[] previous = null;
+            while (true) {
+                long[] counts = new long[2 * processes];
+                long sent = 0, received = 0, generated = 0;
+                boolean idle = true;
+                int best = incumbent;
+                int minF = Integer.MAX_VALUE;       // of the open lists
+                int minSent = Integer.MAX_VALUE;    // of the boards sent since the last probe
+                for (int i = 0; i < processes; i++) {
+                    outs[i].writeByte(PROBE);
+                    outs[i].writeInt(incumbent);
+                    outs[i].writeInt(floor);
+                    outs[i].flush();
+                }
+                for (int i = 0; i < processes; i++) {
+                    ins[i].readByte();  // STATUS
+                    idle &= ins[i].readBoolean();
+                    counts[2 * i] = ins[i].readLong();
+                    counts[2 * i + 1] = ins[i].readLong();
+                    sent += counts[2 * i];
+                    received += counts[2 * i + 1];
+                    generated += ins[i].readLong();
+                    best = Math.min(best, ins[i].readInt());
+                    minF = Math.min(minF, ins[i].readInt());
+                    minSent = Math.min(minSent, ins[i].readInt());
+                }
+                numOfStates = (int) generated;
+                boolean stable = idle && sent == received && best == incumbent && Arrays.equals(counts, previous);
+                incumbent = best;
+                // while boards are on the way the floor can't go up (they may have a lower f value)
+                floor = sent == received ? minF : Math.min(floor, Math.min(minF, minSent));
+                previous = counts;
+                if (stable) {
+                    break;
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            if (incumbent == Integer.MAX_VALUE) {
+                return "no path";
+            }
+            cost = incumbent;
+            return trace(start, goal, outs, ins, size);
+        } finally {
+            for (int i = 0; i < processes; i++) {
+                if (outs[i] != null) {
+                    try {
+                        outs[i].writeByte(STOP);
+                        outs[i].flush();
+                        sockets[i].close();
+                    } catch (IOException e) {
+                        // the worker is already gone
+                    }
+                }
+            }
+            for (Process p : started) {
+                try {
+                    if (!p.waitFor(5, TimeUnit.SECONDS)) {
+                        p.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    p.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the path from the parent boards that the owners of the boards keep
+     */
+    private String trace(State start, State goal, DataOutputStream[] outs, DataInputStream[] ins, int size)
+            throws IOException {
+        ArrayList<int[]> boards = new ArrayList<>();
+        int[] board = goal.getCurBoard();
+        boards.add(board);
+        while (!Arrays.equals(board, start.getCurBoard())) {
+            int w = owner(board, processes);
+            outs[w].writeByte(TRACE);
+            writeBoard(outs[w], board);
+            outs[w].flush();
+            ins[w].readByte();  // PARENT
+            if (!ins[w].readBoolean()) {
+                throw new IOException("the path to the goal is broken");
+            }
+            board = readBoard(ins[w], size);
+            boards.add(board);
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = boards.size() - 1; i > 0; i--) {
+            State s = new PuzzleState(boards.get(i), start.getNumOfRows(), start.getNumOfCols(),
+                    start.getNumOfEmptyBlocks(), 0, goal.getCurBoard());
+            for (State next : s.genSuccessors()) {
+                if (Arrays.equals(next.getCurBoard(), boards.get(i - 1))) {
+                    if (path.length() != 0) {
+                        path.append("-");
+                    }
+                    path.append(next.getStringPath());
+                    break;
+                }
+            }
+        }
+        return path.toString();
+    }
+
+    /**
+     * Runs a worker process, listening on the loopback address unless another address is given
+     * (the protocol has no authentication, so only workers on other machines should listen on a network address)
+     * @param args - "worker", optionally the port to listen on (0 for any free port), "once" to exit after one
+     *               search and "bind" followed by the address to listen on (like 0.0.0.0 for all the addresses)
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        boolean once = false;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("once")) {
+                once = true;
+            } else if (args[i].equals("bind") && i + 1 < args.length) {
+                address = InetAddress.getByName(args[++i]);
+            } else {
+                throw new IllegalArgumentException("unknown worker argument " + args[i]);
+            }
+        }
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(address, port));
+            System.out.println(server.getLocalPort());
+            System.out.flush();
+            do {
+                new Worker(server).run();   // one search per coordinator connection
+            } while (!once);
+        }
+    }
+
+    /**
+     * A worker: the owner of a part of the boards
+     */
+    private static final class Worker {
+        private final ServerSocket server;
+        private final LinkedBlockingQueue<Runnable> inbox = new LinkedBlockingQueue<>();
+        private final PriorityQueue<State> q = new PriorityQueue<>();
+        private final Hashtable<PackedBoard, State> open = new Hashtable<>();
+        private final Hashtable<PackedBoard, State> close = new Hashtable<>();
+        private final Hashtable<PackedBoard, PackedBoard> parents = new Hashtable<>();
+        private DataOutputStream coordinator;
+        private DataOutputStream[] peers;
+        private ArrayList<ArrayList<State>> batches;
+        private int id, n, rows, cols, emptyBlocks, size;
+        private PuzzleStateAlgo.Heuristic heuristic;
+        private int[] goal;
+        private int incumbent = Integer.MAX_VALUE;
+        private int floor = 0;                  // the lowest f value of all the workers in the last probe
+        private int best = Integer.MAX_VALUE;   // the cheapest goal that this worker expanded
+        private long sent, received, generated;
+        private int minSent = Integer.MAX_VALUE;    // the lowest f value sent since the last probe
+        private volatile boolean stopped = false;
+
+        Worker(ServerSocket server) {
+            this.server = server;
+        }
+
+        void run() throws IOException {
+            Socket control = server.accept();
+            coordinator = output(control);
+            DataInputStream in = input(control);
+            in.readByte();  // INIT
+            id = in.readInt();
+            n = in.readInt();
+            String[] addresses = new String[n];
+            for (int i = 0; i < n; i++) {
+                addresses[i] = in.readUTF();
+            }
+            rows = in.readInt();
+            cols = in.readInt();
+            emptyBlocks = in.readInt();
+            heuristic = PuzzleStateAlgo.Heuristic.values()[in.readInt()];
+            size = rows * cols;
+            int[] start = readBoard(in, size);
+            goal = readBoard(in, size);
+            // connect to the workers after this one, and accept the connections of the workers before it
+            peers = new DataOutputStream[n];
+            batches = new ArrayList<>();
+            ArrayList<Socket> sockets = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                batches.add(new ArrayList<>());
+                if (i > id) {
+                    String[] hostPort = addresses[i].split(":");
+                    Socket s = new Socket(hostPort[0], Integer.parseInt(hostPort[1]));
+                    peers[i] = output(s);
+                    peers[i].writeInt(id);
+                    peers[i].flush();
+                    listen(input(s));
+                    sockets.add(s);
+                }
+            }
+            for (int i = 0; i < id; i++) {
+                Socket s = server.accept();
+                DataInputStream peerIn = input(s);
+                peers[peerIn.readInt()] = output(s);
+                listen(peerIn);
+                sockets.add(s);
+            }
+            Thread controlReader = new Thread(() -> readControl(in));
+            controlReader.setDaemon(true);
+            controlReader.start();
+            if (owner(start, n) == id) {
+                add(new PuzzleState(start, rows, cols, emptyBlocks, 0, goal, heuristic), null);
+            }
+            try {
+                loop();
+            } finally {
+                for (Socket s : sockets) {
+                    s.close();
+                }
+                control.close();
+            }
+        }
+
+        /**
+         * Reads the NODES frames of a peer on a new thread
+         */
+        private void listen(DataInputStream in) {
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        in.readByte();  // NODES
+                        int count = in.readInt();
+                        int[][] boards = new int[count][];
+                        int[] costs = new int[count];
+                        int[][] from = new int[count][];
+                        for (int i = 0; i < count; i++) {
+                            boards[i] = readBoard(in, size);
+                            costs[i] = in.readInt();
+                            from[i] = readBoard(in, size);
+                        }
+                        inbox.add(() -> {
+                            for (int i = 0; i < count; i++) {
+                                if (improves(PackedBoard.of(boards[i]), costs[i])) {
+                                    add(new PuzzleState(boards[i], rows, cols, emptyBlocks, costs[i], goal,
+                                            heuristic), PackedBoard.of(from[i]));
+                                }
+                            }
+                            received += count;
+                        });
+                    }
+                } catch (IOException e) {
+                    // the peer has closed the connection
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * Reads the frames of the coordinator, they are answered by the main loop
+         */
+        private void readControl(DataInputStream in) {
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type == PROBE) {
+                        int bound = in.readInt();
+                        int lowest = in.readInt();
+                        inbox.add(() -> status(bound, lowest));
+                    } else if (type == TRACE) {
+                        int[] board = readBoard(in, size);
+                        inbox.add(() -> parent(board));
+                    } else {
+                        break;  // STOP
+                    }
+                }
+            } catch (IOException e) {
+                // the coordinator has closed the connection
+            }
+            stopped = true;
+            inbox.add(() -> { });
+        }
+
+        private void loop() throws IOException {
+            while (!stopped) {
+                Runnable message;
+                while ((message = inbox.poll()) != null) {
+                    message.run();
+                }
+                int expanded = 0;
+                while (expanded < EXPANSIONS && !q.isEmpty() && q.peek().getCost(true) < Math.min(incumbent, best)
+                        && q.peek().getCost(true) <= floor + WINDOW) {
+                    expand(q.poll());
+                    expanded++;
+                }
+                if (expanded == 0) {
+                    flush();
+                    try {
+                        message = inbox.poll(50, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (message != null) {
+                        message.run();
+                    }
+                }
+            }
+        }
+
+        private void expand(State current) throws IOException {
+            if (open.get(current.getPacked()) != current) {
+                return;     // a cheaper copy of this board was found after this one was added
+            }
+            open.remove(current.getPacked());
+            close.put(current.getPacked(), current);
+            if (current.isGoal(goal)) {
+                best = Math.min(best, current.getCost(false));
+                return;
+            }
+            for (State next : current.genSuccessors()) {
+                generated++;
+                int w = owner(next.getCurBoard(), n);
+                if (w == id) {
+                    if (improves(next.getPacked(), next.getCost(false))) {
+                        add(next, current.getPacked());
+                    }
+                } else {
+                    ArrayList<State> batch = batches.get(w);
+                    batch.add(next);
+                    batch.add(current);
+                    if (batch.size() >= 2 * BATCH) {
+                        send(w);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true if the board is not known with a lower or equal cost (checked before making its State)
+         */
+        private boolean improves(PackedBoard key, int g) {
+            State known = open.get(key);
+            if (known == null) {
+                known = close.get(key);
+            }
+            return known == null || g < known.getCost(false);
+        }
+
+        /**
+         * Adds a board of this worker to the open list
+         * @param s      - The State of the board
+         * @param parent - The board it was generated from, or null for the start board
+         */
+        private void add(State s, PackedBoard parent) {
+            PackedBoard key = s.getPacked();
+            close.remove(key);  // a cheaper path to a closed board (the boards come in any order)
+            open.put(key, s);
+            if (parent != null) {
+                parents.put(key, parent);
+            }
+            q.add(s);
+        }
+
+        private void send(int w) throws IOException {
+            ArrayList<State> batch = batches.get(w);
+            if (batch.isEmpty()) {
+                return;
+            }
+            DataOutputStream out = peers[w];
+            out.writeByte(NODES);
+            out.writeInt(batch.size() / 2);
+            for (int i = 0; i < batch.size(); i += 2) {
+                minSent = Math.min(minSent, batch.get(i).getCost(true));
+                writeBoard(out, batch.get(i).getCurBoard());
+                out.writeInt(batch.get(i).getCost(false));
+                writeBoard(out, batch.get(i + 1).getCurBoard());
+            }
+            out.flush();
+            sent += batch.size() / 2;
+            batch.clear();
+        }
+
+        private void flush() throws IOException {
+            for (int w = 0; w < n; w++) {
+                if (w != id) {
+                    send(w);
+                }
+            }
+        }
+
+        private void status(int bound, int lowest) {
+            incumbent = bound;
+            floor = lowest;
+            try {
+                flush();
+                boolean idle = inbox.isEmpty() && (q.isEmpty() || q.peek().getCost(true) >= Math.min(incumbent, best));
+                coordinator.writeByte(STATUS);
+                coordinator.writeBoolean(idle);
+                coordinator.writeLong(sent);
+                coordinator.writeLong(received);
+                coordinator.writeLong(generated);
+                coordinator.writeInt(best);
+                coordinator.writeInt(q.isEmpty() ? Integer.MAX_VALUE : q.peek().getCost(true));
+                coordinator.writeInt(minSent);
+                minSent = Integer.MAX_VALUE;
+                coordinator.flush();
+            } catch (IOException e) {
+                stopped = true;
+            }
+        }
+
+        private void parent(int[] board) {
+            try {
+                PackedBoard parent = parents.get(PackedBoard.of(board));
+                coordinator.writeByte(PARENT);
+                coordinator.writeBoolean(parent != null);
+                if (parent != null) {
+                    writeBoard(coordinator, parent.toArray());
+                }
+                coordinator.flush();
+            } catch (IOException e) {
+                stopped = true;
+            }
+        }
+    }
+}
@@ -1,6 +1,10 @@
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -16,14 +20,95 @@ public class Ex1 {
     public static void main(String[] args)
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, FileNotFoundException {
 
+        // optional: the heuristic function (manhattan, wd, pdb or max), "cache",
+        // "serve" followed by "stdin", "tcp <port>" or "unix <socket path>" for the server mode,
+        // "bits" for the States packed into a long (boards up to 16 cells, see BitState),
+        // "stream" to print the moves of the real time search (LRTA*) as soon as they are committed,
+        // "hcache" for the shared cache of heuristic values (see HeuristicCache),
+        // and "explore" for the layers of all the boards that can be reached from the start board
+        PuzzleStateAlgo.Heuristic heuristic = PuzzleStateAlgo.Heuristic.MANHATTAN;
+        boolean withCache = false;
+        boolean explore = false;
+        boolean withBits = false;
+        boolean stream = false;
+        String serve = null;
+        String address = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "cache" :
+                    withCache = true;
+                    break;
+                case "serve" :
+                    serve = "stdin";
+                    break;
+                case "explore" :
+                    explore = true;
+                    break;
+                case "stream" :
+                    stream = true;
+                    break;
+                case "bits" :
+                    withBits = true;
+                    break;
+                case "hcache" :
+                    HeuristicCache.enable(22);
+                    break;
+                case "stdin" :
+                    serve = args[i];
+                    break;
+                case "tcp" :
+                case "unix" :
+                    serve = args[i];
+                    address = args[++i];
+                    break;
+                default :
+                    heuristic = fixHeuristicName(args[i]);
+            }
+        }
+        if (serve != null) {
+            SolutionCache cache = withCache ? openCache() : null;
+            try {
+                SolverServer server = new SolverServer(heuristic, cache);
+                switch (serve) {
+                    case "tcp" :
+                        server.serveTcp(Integer.parseInt(address));
+                        break;
+                    case "unix" :
+                        server.serveUnix(Paths.get(address));
+                        break;
+                    default :
+                        server.serveStdin();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (cache != null) {
+                    cache.close();
+                }
+            }
+            return;
+        }
         Ex1 mainProg = new Ex1("input.txt");
+        mainProg.heuristic = heuristic;
+        mainProg.withCache = withCache;
+        mainProg.withBits = withBits;
+        mainProg.stream = stream;
+        if (explore) {
+            mainProg.explore();
+        } else {
             mainProg.run();
+        }
 
     }
 
     String selectedAlgo;
     boolean withTime = false;
     boolean withOpen = false;
+    PuzzleStateAlgo.Heuristic heuristic = PuzzleStateAlgo.Heuristic.MANHATTAN;
+    boolean withCache = false;
+    boolean withBits = false;
+    boolean stream = false;
+    final static String cacheFolder = "cache";
     int numOfRows;
     int numOfCols;
     State startState;
@@ -35,10 +120,61 @@ public class Ex1 {
         scanner = new Scanner(file);
     }
 
+    /**
+     * Constructor for Ex1 that reads an instance in the format of the input file from a scanner
+     * @param scanner - The scanner of the instance
+     */
+    public Ex1(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
     public void run() throws InvocationTargetException, NoSuchMethodException, IllegalAccessException {
         read();
         Algo algo = new Algo(selectedAlgo, withOpen, withTime);
+        algo.setHeuristic(heuristic);
+        if (stream) {
+            algo.setMoveListener((step, cost) -> System.out.println(step + " " + cost));
+        }
+        SolutionCache cache = withCache ? openCache() : null;
+        if (cache != null) {
+            algo.setCache(cache, heuristic);
+        }
         algo.run(startState, goalState);
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Explores all the boards that can be reached from the start board (with a worker thread per processor),
+     * and writes the number of boards and the time of every layer to the output file
+     */
+    public void explore() {
+        read();
+        LayeredBFS bfs = new LayeredBFS(startState, Runtime.getRuntime().availableProcessors());
+        try {
+            bfs.explore(startState.getCurBoard());
+            BufferedWriter bf = new BufferedWriter(new FileWriter(Algo.outputFilePath));
+            bf.write(bfs.report());
+            bf.flush();
+            bf.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the persistent cache of solved instances, or null if it can't be opened
+     */
+    static SolutionCache openCache() {
+        try {
+            return new SolutionCache(new File(cacheFolder), 1 << 16);
+        } catch (IOException e) {
+            e.printStackTrace();    // run without the cache
+            return null;
+        }
     }
 
     public void read(){
@@ -49,8 +185,17 @@ public class Ex1 {
         int[] startArr = readStartState();
         scanner.nextLine();
         int[] goalArr = readGoalState();
-        startState = new PuzzleState(startArr, numOfRows, numOfCols, count(startArr, 0),0, goalArr);
-        goalState = new PuzzleState(goalArr, numOfRows, numOfCols, count(startArr, 0),0, goalArr);
+        if (withBits && heuristic != PuzzleStateAlgo.Heuristic.MANHATTAN) {
+            System.err.println("bits ignored: BitState has only the manhattan heuristic, not " + heuristic);
+        } else if (withBits && !(BitState.fits(startArr) && BitState.fits(goalArr))) {
+            System.err.println("bits ignored: BitState holds boards up to " + BitState.MAX_CELLS + " cells");
+        } else if (withBits) {
+            startState = new BitState(startArr, numOfRows, numOfCols, count(startArr, 0), 0, goalArr);
+            goalState = new BitState(goalArr, numOfRows, numOfCols, count(startArr, 0), 0, goalArr);
+            return;
+        }
+        startState = new PuzzleState(startArr, numOfRows, numOfCols, count(startArr, 0),0, goalArr, heuristic);
+        goalState = new PuzzleState(goalArr, numOfRows, numOfCols, count(startArr, 0),0, goalArr, heuristic);
     }
 
     //First line in input.txt: Selected Algo
@@ -156,7 +301,7 @@ public class Ex1 {
      * @param algo - The string obtained from the input file
      * @return the appropriate name for the algorithm
      */
-    private String fixAlgoName(String algo){
+    static String fixAlgoName(String algo){
         switch (algo) {
             case "bfs" :
             case "Bfs":
@@ -166,13 +311,79 @@ public class Ex1 {
                 return "DFID";
             case "A*" :
                 return "AStar";
+            case "HDA*" :
+            case "hda*" :
+                return "HDAStar";
+            case "PEA*" :
+            case "pea*" :
+                return "PEAStar";
+            case "lazy" :
+            case "LAZY" :
+            case "LazyA*" :
+                return "LazyAStar";
+            case "lrta*" :
+            case "LRTA*" :
+            case "realtime" :
+                return "LRTAStar";
+            case "bitstate" :
+            case "BITSTATE" :
+                return "BitstateBFS";
+            case "bitstate-dfs" :
+            case "BITSTATE-DFS" :
+                return "BitstateDFS";
+            case "fringe" :
+            case "FRINGE" :
+                return "Fringe";
+            case "fringe-dfid" :
+            case "FRINGE-DFID" :
+                return "FringeDepth";
             case "IDA*" :
                 return "IDAStar";
             case "DFBNB" :
             case "DFbnb" :
             case "dfbnb" :
                 return "DFBnB";
+            case "PDFBnB" :
+            case "pdfbnb" :
+                return "ParallelDFBnB";
+            case "biucs" :
+            case "BIUCS" :
+                return "BiUCS";
+            case "mm" :
+                return "MM";
+            case "table" :
+            case "TABLE" :
+                return "Table";
+            case "PA*" :
+            case "perimeter" :
+                return "Perimeter";
+            case "auto" :
+            case "AUTO" :
+                return "Auto";
+            case "portfolio" :
+            case "PORTFOLIO" :
+                return "Portfolio";
+            case "WA*" :
+            case "wa*" :
+                return "WAStar";
             default : return algo;
         }
     }
+
+    /**
+     * @param name - The name of the heuristic function as given in the command line
+     * @return the appropriate heuristic function
+     */
+    static PuzzleStateAlgo.Heuristic fixHeuristicName(String name){
+        switch (name.toLowerCase()) {
+            case "wd" :
+            case "walking" :
+                return PuzzleStateAlgo.Heuristic.WALKING_DISTANCE;
+            case "pdb" :
+                return PuzzleStateAlgo.Heuristic.PATTERN_DATABASE;
+            case "max" :
+                return PuzzleStateAlgo.Heuristic.MAX;
+            default : return PuzzleStateAlgo.Heuristic.MANHATTAN;
+        }
+    }
 }
@@ -0,0 +1,102 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size, lossy and lock free cache of heuristic values, shared by all the searches of the process:
+ * by the iterations of IDA* (that generate new States for the same boards again and again), by the threads of
+ * the parallel searches and by the following instances with the same goal board and heuristic function.
+ * Only the expensive heuristic functions (walking distance and pattern databases) use it, the Manhattan
+ * distance and linear conflict are updated from the previous State and are cheaper than a lookup.
+ * The key of a board is its Zobrist hash mixed with the key of the goal board and the heuristic function.
+ * Every slot is a single long: the high bits of the key (a tag) and the value in the low 20 bits,
+ * so a slot is read and written atomically without locks, a new value simply replaces the old one in its slot.
+ *
+ * @author Itai Lashover
+ */
+public final class HeuristicCache {
+
+    private static final int VALUE_BITS = 20;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static volatile HeuristicCache shared = null;
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    private HeuristicCache(int bits) {
+        this.slots = new AtomicLongArray(1 << bits);
+        this.mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Turns on the cache for all the following searches
+     * @param bits - The log2 of the number of slots (8 bytes each)
+     */
+    public static synchronized void enable(int bits) {
+        if (shared == null || shared.slots.length() != 1 << bits) {
+            shared = new HeuristicCache(bits);
+        }
+    }
+
+    /**
+     * @return the cache, or null if it is not turned on
+     */
+    public static HeuristicCache shared() {
+        return shared;
+    }
+
+    /**
+     * @param goal        - The goal board
+     * @param n           - Number of rows in the Puzzle
+     * @param m           - Number of column in the Puzzle
+     * @param emptyBlocks - Number of empty blocks in the Puzzle
+     * @param heuristic   - The heuristic function
+     * @return the key of the goal board, its dimensions and the heuristic function, mixed into the keys of
+     *         the boards (the same goal array of a 3x4 and of a 4x3 Puzzle has other heuristic values)
+     */
+    public static long goalKey(int[] goal, int n, int m, int emptyBlocks, PuzzleStateAlgo.Heuristic heuristic) {
+        long dims = ((long) n << 40) | ((long) m << 20) | ((long) emptyBlocks << 8) | (heuristic.ordinal() + 1);
+        long z = Zobrist.hash(goal) + 0x9E3779B97F4A7C15L * dims;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param key - The key of a board
+     * @return the cached heuristic value of the board, or -1 if it is not in the cache
+     */
+    public int get(long key) {
+        lookups.increment();
+        long slot = slots.get((int) key & mask);
+        if (slot != 0 && (slot & ~VALUE_MASK) == (key & ~VALUE_MASK)) {
+            hits.increment();
+            return (int) (slot & VALUE_MASK) - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @param key   - The key of a board
+     * @param value - The heuristic value of the board
+     */
+    public void put(long key, int value) {
+        if (value + 1 <= VALUE_MASK) {
+            slots.set((int) key & mask, (key & ~VALUE_MASK) | (value + 1));
+        }
+    }
+
+    /**
+     * @return the number of lookups since the cache was turned on
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * @return the number of lookups that found the value since the cache was turned on
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+}
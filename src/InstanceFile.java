@@ -0,0 +1,309 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A compact binary file of many instances with the same dimensions, number of empty blocks and goal board.
+ * The header holds the dimensions, the number of empty blocks, the bits per tile (4 for boards up to 16 cells,
+ * 8 otherwise), the number of instances and the goal board, then every instance is its start board packed
+ * into a fixed size record, so instance i is at a known offset. The file is memory mapped (in regions of up to
+ * 1GB) and read in place: the boards are unpacked into the arrays of the callers, nothing is parsed or copied
+ * into the heap, and the instances are handed to worker threads in chunks.
+ * Usage: java InstanceFile convert <file> <text instances or folders...>
+ *        java InstanceFile read <file>
+ *        java InstanceFile solve <file> <algorithm> [heuristic] [threads]
+ *
+ * @author Itai Lashover
+ */
+public final class InstanceFile {
+
+    private static final int MAGIC = 0x4E505A31;
+    private static final int HEADER = 32;
+    private static final int REGION = 1 << 30;
+    private static final int CHUNK = 1024;
+    private final int numOfRows;
+    private final int numOfCols;
+    private final int emptyBlocks;
+    private final int tileBits;
+    private final int recordSize;
+    private final int count;
+    private final int recordsPerRegion;
+    private final MappedByteBuffer[] regions;
+    private final int[] goal;
+
+    /**
+     * Maps an instance file
+     * @param file - The instance file
+     * @throws IOException if the file can't be read or is not an instance file
+     */
+    public InstanceFile(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not an instance file");
+            }
+            this.numOfRows = header.getInt(4);
+            this.numOfCols = header.getInt(8);
+            this.emptyBlocks = header.getInt(12);
+            this.tileBits = header.getInt(16);
+            this.count = header.getInt(20);
+            this.recordSize = recordSize(numOfRows * numOfCols, tileBits);
+            this.recordsPerRegion = REGION / recordSize;
+            long first = HEADER + recordSize;   // the goal board is the record before the first instance
+            this.regions = new MappedByteBuffer[(count + recordsPerRegion - 1) / recordsPerRegion + 1];
+            regions[0] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, recordSize);
+            for (int r = 1; r < regions.length; r++) {
+                long from = first + (long) (r - 1) * recordsPerRegion * recordSize;
+                long size = (long) Math.min(recordsPerRegion, count - (r - 1) * recordsPerRegion) * recordSize;
+                regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, from, size);
+            }
+        }
+        this.goal = new int[numOfRows * numOfCols];
+        unpack(regions[0], 0, goal);
+    }
+
+    private static int recordSize(int cells, int tileBits) {
+        return (cells * tileBits + 7) / 8;
+    }
+
+    /**
+     * @return the number of instances in the file
+     */
+    public int size() {
+        return count;
+    }
+
+    public int getNumOfRows() {
+        return numOfRows;
+    }
+
+    public int getNumOfCols() {
+        return numOfCols;
+    }
+
+    public int getNumOfEmptyBlocks() {
+        return emptyBlocks;
+    }
+
+    /**
+     * @return the goal board of all the instances
+     */
+    public int[] getGoal() {
+        return goal.clone();
+    }
+
+    /**
+     * Unpacks the start board of an instance
+     * @param i     - The number of the instance (from 0)
+     * @param board - The array to unpack the board into (of numOfRows * numOfCols cells)
+     */
+    public void board(int i, int[] board) {
+        unpack(regions[1 + i / recordsPerRegion], (i % recordsPerRegion) * recordSize, board);
+    }
+
+    private void unpack(MappedByteBuffer region, int offset, int[] board) {
+        if (tileBits == 8) {
+            for (int c = 0; c < board.length; c++) {
+                board[c] = region.get(offset + c) & 0xFF;
+            }
+            return;
+        }
+        for (int c = 0; c < board.length; c += 2) {
+            int b = region.get(offset + c / 2) & 0xFF;
+            board[c] = b & 0xF;
+            if (c + 1 < board.length) {
+                board[c + 1] = b >>> 4;
+            }
+        }
+    }
+
+    /**
+     * Hands all the instances to worker threads: every worker takes chunks of instances, unpacks every
+     * board into its own array and passes it to the consumer (that must not keep the array)
+     * @param threads  - The number of worker threads
+     * @param consumer - Gets the number of the instance and its board
+     */
+    public void stream(int threads, BoardConsumer consumer) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        AtomicInteger next = new AtomicInteger();
+        ArrayList<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            workers.add(pool.submit(() -> {
+                int[] board = new int[numOfRows * numOfCols];
+                for (int from = next.getAndAdd(CHUNK); from < count; from = next.getAndAdd(CHUNK)) {
+                    for (int i = from; i < Math.min(count, from + CHUNK); i++) {
+                        board(i, board);
+                        consumer.accept(i, board);
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> w : workers) {
+                w.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Gets the instances of the stream method
+     */
+    public interface BoardConsumer {
+        void accept(int i, int[] board);
+    }
+
+    /**
+     * Writes an instance file
+     * @param file        - The instance file (replaced if it exists)
+     * @param n           - Number of rows in the Puzzle
+     * @param m           - Number of column in the Puzzle
+     * @param emptyBlocks - Number of empty blocks in the Puzzle
+     * @param goal        - The goal board of all the instances
+     * @param boards      - The start boards
+     */
+    public static void write(File file, int n, int m, int emptyBlocks, int[] goal, Iterable<int[]> boards)
+            throws IOException {
+        int cells = n * m;
+        int tileBits = cells <= 16 ? 4 : 8;
+        if (cells > 256) {
+            throw new IllegalArgumentException("boards up to 256 cells can be written");
+        }
+        byte[] record = new byte[recordSize(cells, tileBits)];
+        int count = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            byte[] header = new byte[HEADER];
+            ByteBuffer h = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+            h.putInt(MAGIC).putInt(n).putInt(m).putInt(emptyBlocks).putInt(tileBits).putInt(0);
+            out.write(header);
+            out.write(pack(goal, tileBits, record));
+            for (int[] board : boards) {
+                if (board.length != cells) {
+                    throw new IllegalArgumentException("all the boards must have " + cells + " cells");
+                }
+                out.write(pack(board, tileBits, record));
+                count++;
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(20);
+            raf.writeInt(Integer.reverseBytes(count));
+        }
+    }
+
+    private static byte[] pack(int[] board, int tileBits, byte[] record) {
+        Arrays.fill(record, (byte) 0);
+        for (int c = 0; c < board.length; c++) {
+            if (tileBits == 8) {
+                record[c] = (byte) board[c];
+            } else {
+                record[c / 2] |= (byte) (board[c] << 4 * (c % 2));
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Converts instances in the format of the input file (all with the same dimensions and goal board)
+     * @param file   - The instance file to write
+     * @param inputs - Input files, or folders of input files (.txt)
+     * @return the number of instances written
+     */
+    public static int convert(File file, ArrayList<File> inputs) throws IOException {
+        ArrayList<int[]> boards = new ArrayList<>();
+        Ex1 first = null;
+        for (File input : inputs) {
+            Ex1 instance = new Ex1(new Scanner(input));
+            instance.read();
+            if (first == null) {
+                first = instance;
+            } else if (instance.numOfRows != first.numOfRows || instance.numOfCols != first.numOfCols
+                    || !Arrays.equals(instance.goalState.getCurBoard(), first.goalState.getCurBoard())) {
+                throw new IllegalArgumentException(input + " has other dimensions or another goal board");
+            }
+            boards.add(instance.startState.getCurBoard());
+        }
+        if (first == null) {
+            throw new IllegalArgumentException("no instances to convert");
+        }
+        write(file, first.numOfRows, first.numOfCols, first.startState.getNumOfEmptyBlocks(),
+                first.goalState.getCurBoard(), boards);
+        return boards.size();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        File file = new File(args[1]);
+        switch (args[0]) {
+            case "convert" : {
+                ArrayList<File> inputs = new ArrayList<>();
+                for (int i = 2; i < args.length; i++) {
+                    File f = new File(args[i]);
+                    File[] files = f.listFiles((dir, name) -> name.endsWith(".txt"));
+                    if (files != null) {
+                        Arrays.sort(files);
+                        inputs.addAll(Arrays.asList(files));
+                    } else {
+                        inputs.add(f);
+                    }
+                }
+                System.out.println(convert(file, inputs) + " instances written to " + file);
+                break;
+            }
+            case "read" : {
+                long startTime = System.nanoTime();
+                InstanceFile instances = new InstanceFile(file);
+                AtomicLong check = new AtomicLong();
+                instances.stream(Runtime.getRuntime().availableProcessors(), (i, board) -> check.addAndGet(board[0]));
+                System.out.println(instances.size() + " instances read in "
+                        + (double) (System.nanoTime() - startTime) / 1_000_000_000 + " seconds (" + check + ")");
+                break;
+            }
+            case "solve" : {
+                InstanceFile instances = new InstanceFile(file);
+                String algoName = Ex1.fixAlgoName(args[2]);
+                PuzzleStateAlgo.Heuristic h = Ex1.fixHeuristicName(args.length > 3 ? args[3] : "manhattan");
+                int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+                int n = instances.getNumOfRows(), m = instances.getNumOfCols(), e = instances.getNumOfEmptyBlocks();
+                int[] goal = instances.getGoal();
+                String[] answers = new String[instances.size()];
+                instances.stream(threads, (i, board) -> {
+                    Algo algo = new Algo(algoName, false, false);
+                    algo.setHeuristic(h);
+                    try {
+                        String path = algo.solve(new PuzzleState(board.clone(), n, m, e, 0, goal, h),
+                                new PuzzleState(goal, n, m, e, 0, goal, h));
+                        answers[i] = i + "|" + path.trim().replace("\n", "|");
+                    } catch (ReflectiveOperationException ex) {
+                        answers[i] = i + "|error|" + ex;
+                    }
+                });
+                for (String a : answers) {
+                    System.out.println(a);
+                }
+                break;
+            }
+            default :
+                throw new IllegalArgumentException("unknown command " + args[0]);
+        }
+    }
+}
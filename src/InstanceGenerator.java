@@ -0,0 +1,160 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generates instances of a controlled difficulty: every start board is made by a seeded random walk from
+ * the goal board (with the moves of PuzzleState, so it is always solvable), solved optimally and put in
+ * a bucket by its optimal cost, until every bucket has the required number of instances.
+ * The same arguments always make the same instances. Every instance is written in the format of the
+ * input file, to a file named by its dimensions, empty blocks, optimal cost and number,
+ * like "3x3b1-c090-002.txt" (see PerfRunner).
+ * Usage: java InstanceGenerator rows cols blanks [per bucket] [bucket width] [max cost] [seed] [folder]
+ *
+ * @author Itai Lashover
+ */
+public class InstanceGenerator {
+
+    private static final int SOLVE_SECONDS = 20;   // instances that are not solved in time are dropped
+    private final int numOfRows;
+    private final int numOfCols;
+    private final int emptyBlocks;
+    private final int[] goal;
+    private final Random rnd;
+
+    /**
+     * Constructor for InstanceGenerator
+     * @param n           - Number of rows in the Puzzle
+     * @param m           - Number of column in the Puzzle
+     * @param emptyBlocks - Number of empty blocks in the Puzzle (1 or 2)
+     * @param seed        - The seed of the random walks
+     */
+    public InstanceGenerator(int n, int m, int emptyBlocks, long seed) {
+        this.numOfRows = n;
+        this.numOfCols = m;
+        this.emptyBlocks = emptyBlocks;
+        this.goal = new int[n * m];
+        for (int i = 0; i < goal.length - emptyBlocks; i++) {
+            goal[i] = i + 1;
+        }
+        this.rnd = new Random(seed);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int n = Integer.parseInt(args[0]);
+        int m = Integer.parseInt(args[1]);
+        int blanks = Integer.parseInt(args[2]);
+        int perBucket = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int width = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        int maxCost = args.length > 5 ? Integer.parseInt(args[5]) : 100;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : 1;
+        File folder = new File(args.length > 7 ? args[7] : "instances");
+        int written = new InstanceGenerator(n, m, blanks, seed).generate(perBucket, width, maxCost, folder);
+        System.out.println(written + " instances written to " + folder);
+    }
+
+    /**
+     * @param walk - The number of moves
+     * @return the board at the end of a random walk from the goal board (a move that takes back the
+     *         previous one is never chosen)
+     */
+    public int[] randomWalk(int walk) {
+        State s = new PuzzleState(goal.clone(), numOfRows, numOfCols, emptyBlocks, 0, goal);
+        for (int i = 0; i < walk; i++) {
+            ArrayList<State> suc = s.genSuccessors();
+            s = suc.get(rnd.nextInt(suc.size()));
+        }
+        return s.getCurBoard();
+    }
+
+    /**
+     * Makes instances until every bucket of optimal costs (0 up to maxCost, 'width' each) holds
+     * 'perBucket' instances, or until too many walks did not fill any bucket
+     * @return the number of instances written
+     */
+    public int generate(int perBucket, int width, int maxCost, File folder) throws IOException {
+        folder.mkdirs();
+        int buckets = maxCost / width + 1;
+        int[] filled = new int[buckets];
+        int written = 0, misses = 0;
+        int maxWalk = Math.max(4, maxCost / 2);    // a move costs at least 5, so longer walks are rarely needed
+        ExecutorService solver = Executors.newSingleThreadExecutor();
+        try {
+            while (written < buckets * perBucket && misses < 200 * buckets) {
+                int[] board = randomWalk(1 + rnd.nextInt(maxWalk));
+                State start = new PuzzleState(board, numOfRows, numOfCols, emptyBlocks, 0, goal);
+                if (start.getCost(true) > maxCost) {
+                    misses++;
+                    continue;
+                }
+                int cost = solve(solver, board);
+                if (cost < 0 || cost > maxCost || filled[cost / width] == perBucket) {
+                    misses++;
+                    continue;
+                }
+                misses = 0;
+                String name = String.format("%dx%db%d-c%03d-%03d.txt", numOfRows, numOfCols, emptyBlocks, cost,
+                        filled[cost / width]++);
+                try (Writer w = new FileWriter(new File(folder, name))) {
+                    w.write(format("AStar", board));
+                }
+                written++;
+            }
+        } finally {
+            solver.shutdownNow();
+        }
+        return written;
+    }
+
+    /**
+     * @return the optimal cost of the board, or -1 if it was not solved in time
+     */
+    private int solve(ExecutorService solver, int[] board) {
+        PuzzleStateAlgo.Heuristic h = PuzzleStateAlgo.Heuristic.MAX;
+        Algo algo = new Algo(emptyBlocks == 1 ? "IDAStar" : "AStar", false, false);
+        algo.setHeuristic(h);
+        State start = new PuzzleState(board, numOfRows, numOfCols, emptyBlocks, 0, goal, h);
+        State goalState = new PuzzleState(goal, numOfRows, numOfCols, emptyBlocks, 0, goal, h);
+        Future<String> answer = solver.submit(() -> algo.solve(start, goalState));
+        try {
+            return answer.get(SOLVE_SECONDS, TimeUnit.SECONDS).startsWith("no path") ? -1 : algo.cost;
+        } catch (TimeoutException | CancellationException | ExecutionException e) {
+            algo.cancel();
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * @return the instance in the format of the input file
+     */
+    String format(String algo, int[] board) {
+        StringBuilder text = new StringBuilder(algo + "\nno time\nno open\n" + numOfRows + "x" + numOfCols + "\n");
+        appendBoard(text, board);
+        text.append("Goal state:\n");
+        appendBoard(text, goal);
+        return text.toString();
+    }
+
+    private void appendBoard(StringBuilder text, int[] board) {
+        for (int i = 0; i < numOfRows; i++) {
+            for (int j = 0; j < numOfCols; j++) {
+                int tile = board[i * numOfCols + j];
+                text.append(j > 0 ? "," : "").append(tile == 0 ? "_" : String.valueOf(tile));
+            }
+            text.append("\n");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel breadth first exploration of all the boards that can be reached from a start board
+ * (up to 12 cells, like 3x4 or two empty blocks on 3x3), layer by layer (the number of moves, not the cost).
+ * Every board is ranked into a dense index (see SolutionTable.rank), the visited boards are bits of an atomic
+ * bitmap (set by compare and set, so the workers share it without locks), and every layer is an array
+ * of ranks that is split into chunks for the worker threads, each of them collects its part of the next layer.
+ * The result is the number of boards and the time of every layer (so also the number of reachable boards
+ * and the diameter from the start board).
+ *
+ * @author Itai Lashover
+ */
+public final class LayeredBFS {
+
+    public static final int MAX_CELLS = 12;
+    private static final int CHUNK = 4096;
+    private final int numOfRows;
+    private final int numOfCols;
+    private final int emptyBlocks;
+    private final int threads;
+    private final int[] values;     // the tiles of the boards, sorted
+    private final AtomicLongArray visited;
+    private final ArrayList<Integer> counts = new ArrayList<>();
+    private final ArrayList<Long> times = new ArrayList<>();
+
+    /**
+     * Constructor for LayeredBFS
+     * @param start   - The start State
+     * @param threads - The number of worker threads
+     */
+    public LayeredBFS(State start, int threads) {
+        this.numOfRows = start.getNumOfRows();
+        this.numOfCols = start.getNumOfCols();
+        this.emptyBlocks = start.getNumOfEmptyBlocks();
+        if (numOfRows * numOfCols > MAX_CELLS) {
+            throw new IllegalArgumentException("boards up to " + MAX_CELLS + " cells can be explored");
+        }
+        this.threads = threads;
+        this.values = start.getCurBoard().clone();
+        Arrays.sort(values);
+        this.visited = new AtomicLongArray((SolutionTable.factorial(values.length) + 63) / 64);
+    }
+
+    /**
+     * Marks the rank as visited
+     * @return true if it was not visited before
+     */
+    private boolean visit(int rank) {
+        int i = rank >>> 6;
+        long bit = 1L << (rank & 63);
+        while (true) {
+            long word = visited.get(i);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (visited.compareAndSet(i, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Explores all the boards that can be reached from the board
+     * @param board - The start board
+     */
+    public void explore(int[] board) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            int[] layer = {SolutionTable.rank(board, values)};
+            visit(layer[0]);
+            while (layer.length != 0) {
+                long startTime = System.nanoTime();
+                counts.add(layer.length);
+                ArrayList<Future<int[]>> parts = new ArrayList<>();
+                int[] current = layer;
+                for (int from = 0; from < current.length; from += CHUNK) {
+                    int lo = from, hi = Math.min(current.length, from + CHUNK);
+                    parts.add(pool.submit(() -> expand(current, lo, hi)));
+                }
+                int size = 0;
+                ArrayList<int[]> next = new ArrayList<>();
+                for (Future<int[]> part : parts) {
+                    try {
+                        int[] ranks = part.get();
+                        next.add(ranks);
+                        size += ranks[0];
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+                layer = new int[size];
+                int at = 0;
+                for (int[] ranks : next) {
+                    System.arraycopy(ranks, 1, layer, at, ranks[0]);
+                    at += ranks[0];
+                }
+                times.add(System.nanoTime() - startTime);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return the new boards of the next layer that come from the chunk [lo, hi) of the layer,
+     *         the first item is the number of boards
+     */
+    private int[] expand(int[] layer, int lo, int hi) {
+        int[] next = new int[1 + 4 * (hi - lo)];
+        for (int i = lo; i < hi; i++) {
+            int[] board = SolutionTable.unrank(layer[i], values);
+            State s = new PuzzleState(board, numOfRows, numOfCols, emptyBlocks, 0, board);
+            for (State child : s.genSuccessors()) {
+                int r = SolutionTable.rank(child.getCurBoard(), values);
+                if (visit(r)) {
+                    if (next[0] + 1 == next.length) {
+                        next = Arrays.copyOf(next, next.length * 2);
+                    }
+                    next[++next[0]] = r;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return the number of boards in every layer (layer 0 is the start board)
+     */
+    public ArrayList<Integer> getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return the report of the exploration: a line for every layer (its number of boards and time),
+     *         the number of reachable boards and the diameter from the start board
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        long total = 0, totalTime = 0;
+        for (int d = 0; d < counts.size(); d++) {
+            report.append("Layer ").append(d).append(": ").append(counts.get(d)).append(" boards, ")
+                    .append((double) times.get(d) / 1_000_000_000).append(" seconds\n");
+            total += counts.get(d);
+            totalTime += times.get(d);
+        }
+        report.append("Reachable: ").append(total).append("\n");
+        report.append("Diameter: ").append(counts.size() - 1).append("\n");
+        report.append((double) totalTime / 1_000_000_000).append(" seconds");
+        return report.toString();
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Arrays;
+
+/**
+ * PackedBoard is a compact, immutable copy of a puzzle board. Every tile is stored in a single byte,
+ * eight tiles in each long, so a 10x10 board takes 13 longs instead of 100 ints.
+ * The board also carries its Zobrist hash (usually updated incrementally by the State that created it),
+ * so hashing is O(1) and the words are compared only when two hashes collide. This makes PackedBoard
+ * the key of the duplicate detection tables of the search algorithms.
+ *
+ * @author Itai Lashover
+ */
+public final class PackedBoard {
+
+    private static final int TILES_PER_WORD = 8;
+    private final long[] words;
+    private final int size;
+    private final long hash;
+
+    private PackedBoard(long[] words, int size, long hash) {
+        this.words = words;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Packs a board
+     * @param board - An array that represent the puzzle state, every tile must be in the range 0..255
+     * @return the packed board
+     */
+    public static PackedBoard of(int[] board) {
+        return of(board, Zobrist.hash(board));
+    }
+
+    /**
+     * Packs a board whose Zobrist hash is already known
+     * @param board - An array that represent the puzzle state, every tile must be in the range 0..255
+     * @param hash  - The Zobrist hash of the board
+     * @return the packed board
+     */
+    public static PackedBoard of(int[] board, long hash) {
+        long[] words = new long[(board.length + TILES_PER_WORD - 1) / TILES_PER_WORD];
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] < 0 || board[i] > 0xFF) {
+                throw new IllegalArgumentException("tile " + board[i] + " does not fit in a byte");
+            }
+            words[i / TILES_PER_WORD] |= (long) board[i] << shift(i);
+        }
+        return new PackedBoard(words, board.length, hash);
+    }
+
+    /**
+     * Packs a board of up to 16 cells that is already packed into a long, 4 bits per tile (see BitState)
+     * @param nibbles - The board, the tile of the cell i in the bits 4i to 4i+3
+     * @param size    - The number of cells in the board
+     * @param hash    - The Zobrist hash of the board
+     * @return the packed board
+     */
+    public static PackedBoard ofNibbles(long nibbles, int size, long hash) {
+        long[] words = new long[(size + TILES_PER_WORD - 1) / TILES_PER_WORD];
+        for (int w = 0; w < words.length; w++) {
+            long x = (nibbles >>> (32 * w)) & 0xFFFFFFFFL;      // spread 8 nibbles into 8 bytes
+            x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+            x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+            x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+            words[w] = x;
+        }
+        if (size % TILES_PER_WORD != 0) {
+            words[words.length - 1] &= (1L << shift(size)) - 1;
+        }
+        return new PackedBoard(words, size, hash);
+    }
+
+    private static int shift(int cell) {
+        return (cell % TILES_PER_WORD) * 8;
+    }
+
+    /**
+     * @param cell - The index of a cell in the board
+     * @return the tile in that cell
+     */
+    public int get(int cell) {
+        return (int) (words[cell / TILES_PER_WORD] >>> shift(cell)) & 0xFF;
+    }
+
+    /**
+     * @return the number of cells in the board
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the Zobrist hash of the board
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Unpacks the board
+     * @return an array that represent the puzzle state
+     */
+    public int[] toArray() {
+        int[] board = new int[size];
+        for (int i = 0; i < size; i++) {
+            board[i] = get(i);
+        }
+        return board;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedBoard)) {
+            return false;
+        }
+        PackedBoard other = (PackedBoard) o;
+        return hash == other.hash && size == other.size && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
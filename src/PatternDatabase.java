@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Additive pattern database for boards with one or two empty blocks (up to 16 cells).
+ * The tiles are split into disjoint groups, and for every group a table holds the exact cost of bringing
+ * the tiles of the group and the empty blocks to their goal places, where the other tiles are "don't care"
+ * tiles. The moves are the real moves of the puzzle (single moves and, with two empty blocks, pair moves)
+ * and the cost of a move is split between the tiles that it moves: a single move of a group tile costs 5,
+ * a pair move costs 6 (horizontal) or 7 (vertical) and each of its two tiles is charged half of it, and
+ * a move of "don't care" tiles is free. So the sum of the tables over the groups is admissible.
+ * The costs are stored doubled (so halves are integers) and the tables are built by a backward
+ * Dijkstra (with buckets, since the costs are small) from the goal, once per (rows, cols, goal board).
+ *
+ * @author Itai Lashover
+ */
+public final class PatternDatabase {
+
+    private static final int MAX_CELLS = 16;
+    private static final Map<String, PatternDatabase> cache = new HashMap<>();
+    private final int size;
+    private final int maxTile;
+    private final int emptyBlocks;
+    private final int[][] groups;       // the tiles of each group
+    private final short[][] tables;     // doubled costs, indexed by the rank of (group tiles, empty blocks)
+
+    private PatternDatabase(int size, int maxTile, int emptyBlocks, int[][] groups, short[][] tables) {
+        this.size = size;
+        this.maxTile = maxTile;
+        this.emptyBlocks = emptyBlocks;
+        this.groups = groups;
+        this.tables = tables;
+    }
+
+    /**
+     * @param rows - Number of rows in the Puzzle
+     * @param cols - Number of column in the Puzzle
+     * @param goal - The goal board
+     * @return the pattern database of the goal, or null if the board is too large (or has more than two empty blocks)
+     */
+    public static synchronized PatternDatabase get(int rows, int cols, int[] goal) {
+        String k = rows + "x" + cols + ":" + Arrays.toString(goal);
+        if (!cache.containsKey(k)) {
+            cache.put(k, build(rows, cols, goal));
+        }
+        return cache.get(k);
+    }
+
+    private static PatternDatabase build(int rows, int cols, int[] goal) {
+        int size = rows * cols;
+        ArrayList<Integer> tiles = new ArrayList<>();
+        ArrayList<Integer> blanks = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (goal[i] == 0) {
+                blanks.add(i);
+            } else {
+                tiles.add(goal[i]);
+            }
+        }
+        if (size > MAX_CELLS || blanks.isEmpty() || blanks.size() > 2) {
+            return null;
+        }
+        int groupSize = size <= 12 ? 5 : 4;
+        int numOfGroups = (tiles.size() + groupSize - 1) / groupSize;
+        int[][] groups = new int[numOfGroups][];
+        short[][] tables = new short[numOfGroups][];
+        for (int g = 0; g < numOfGroups; g++) {
+            int from = g * tiles.size() / numOfGroups;
+            int to = (g + 1) * tiles.size() / numOfGroups;
+            groups[g] = new int[to - from];
+            int[] start = new int[to - from + blanks.size()];
+            for (int i = from; i < to; i++) {
+                groups[g][i - from] = tiles.get(i);
+                start[i - from] = indexOf(goal, tiles.get(i));
+            }
+            for (int i = 0; i < blanks.size(); i++) {
+                start[to - from + i] = blanks.get(i);
+            }
+            tables[g] = dijkstra(rows, cols, start, blanks.size());
+        }
+        return new PatternDatabase(size, Collections.max(tiles), blanks.size(), groups, tables);
+    }
+
+    private static int indexOf(int[] board, int tile) {
+        int i = 0;
+        while (board[i] != tile) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Backward Dijkstra from the goal places of a group over all its abstract states
+     * @param rows        - Number of rows in the Puzzle
+     * @param cols        - Number of column in the Puzzle
+     * @param start       - The goal places of the group tiles followed by the goal places of the empty blocks
+     * @param emptyBlocks - Number of empty blocks
+     * @return the doubled cost of every abstract state
+     */
+    private static short[] dijkstra(int rows, int cols, int[] start, int emptyBlocks) {
+        int size = rows * cols;
+        int m = start.length;
+        int k = m - emptyBlocks;
+        short[] dist = new short[numOfRanks(size, m)];
+        Arrays.fill(dist, Short.MAX_VALUE);
+        int s0 = rank(start, size, emptyBlocks);
+        dist[s0] = 0;
+        ArrayList<int[]> buckets = new ArrayList<>();   // bucket[0] holds the number of states in the bucket
+        add(buckets, 0, s0);
+        int[] pos = new int[m];
+        int[] next = new int[m];
+        int[] occ = new int[size];      // -1 for "don't care" tiles, the index in pos otherwise
+        for (int d = 0; d < buckets.size(); d++) {
+            for (int b = 1; b <= buckets.get(d)[0]; b++) {
+                int s = buckets.get(d)[b];
+                if (dist[s] != d) {
+                    continue;
+                }
+                unrank(s, size, pos);
+                Arrays.fill(occ, -1);
+                for (int i = 0; i < m; i++) {
+                    occ[pos[i]] = i;
+                }
+                for (int e = k; e < m; e++) {   // single moves into each empty block
+                    int hole = pos[e];
+                    for (int c : neighbors(hole, rows, cols)) {
+                        if (c < 0 || occ[c] >= k) {
+                            continue;
+                        }
+                        System.arraycopy(pos, 0, next, 0, m);
+                        next[e] = c;
+                        int cost = 0;
+                        if (occ[c] >= 0) {
+                            next[occ[c]] = hole;
+                            cost = 10;
+                        }
+                        relax(buckets, dist, rank(next, size, emptyBlocks), d + cost);
+                    }
+                }
+                if (emptyBlocks == 2) {         // pair moves
+                    int h1 = Math.min(pos[k], pos[k + 1]);
+                    int h2 = Math.max(pos[k], pos[k + 1]);
+                    ArrayList<Integer> shifts = new ArrayList<>();
+                    int unitCost;
+                    if (h1 + cols == h2) {          // vertical empty blocks, the tiles move horizontally
+                        if (h1 % cols != 0) {
+                            shifts.add(-1);
+                        }
+                        if (h1 % cols != cols - 1) {
+                            shifts.add(1);
+                        }
+                        unitCost = 6;
+                    } else if (h1 + 1 == h2 && h1 / cols == h2 / cols) {   // the tiles move vertically
+                        if (h1 >= cols) {
+                            shifts.add(-cols);
+                        }
+                        if (h1 < (rows - 1) * cols) {
+                            shifts.add(cols);
+                        }
+                        unitCost = 7;
+                    } else {
+                        continue;
+                    }
+                    for (int shift : shifts) {
+                        System.arraycopy(pos, 0, next, 0, m);
+                        int cost = 0;
+                        next[k] = h1 + shift;
+                        next[k + 1] = h2 + shift;
+                        if (occ[h1 + shift] >= 0) {
+                            next[occ[h1 + shift]] = h1;
+                            cost += unitCost;
+                        }
+                        if (occ[h2 + shift] >= 0) {
+                            next[occ[h2 + shift]] = h2;
+                            cost += unitCost;
+                        }
+                        relax(buckets, dist, rank(next, size, emptyBlocks), d + cost);
+                    }
+                }
+            }
+            buckets.set(d, null);
+        }
+        return dist;
+    }
+
+    private static int[] neighbors(int cell, int rows, int cols) {
+        return new int[]{
+                cell % cols != 0 ? cell - 1 : -1,
+                cell % cols != cols - 1 ? cell + 1 : -1,
+                cell >= cols ? cell - cols : -1,
+                cell < (rows - 1) * cols ? cell + cols : -1};
+    }
+
+    private static void relax(ArrayList<int[]> buckets, short[] dist, int s, int d) {
+        if (d < dist[s]) {
+            dist[s] = (short) d;
+            add(buckets, d, s);
+        }
+    }
+
+    private static void add(ArrayList<int[]> buckets, int d, int s) {
+        while (buckets.size() <= d) {
+            buckets.add(new int[16]);
+        }
+        int[] bucket = buckets.get(d);
+        if (bucket[0] + 1 == bucket.length) {
+            bucket = Arrays.copyOf(bucket, bucket.length * 2);
+            buckets.set(d, bucket);
+        }
+        bucket[++bucket[0]] = s;
+    }
+
+    /**
+     * @return the number of ways to place m distinct items in 'size' cells
+     */
+    private static int numOfRanks(int size, int m) {
+        int n = 1;
+        for (int i = 0; i < m; i++) {
+            n *= size - i;
+        }
+        return n;
+    }
+
+    /**
+     * Ranks the places of the items (the order of the empty blocks does not matter,
+     * so they are ranked from the lower index to the higher)
+     * @param pos         - The places of the group tiles followed by the places of the empty blocks
+     * @param size        - The number of cells in the board
+     * @param emptyBlocks - Number of empty blocks
+     * @return a dense index of the places
+     */
+    private static int rank(int[] pos, int size, int emptyBlocks) {
+        int m = pos.length;
+        if (emptyBlocks == 2 && pos[m - 2] > pos[m - 1]) {
+            int temp = pos[m - 2];
+            pos[m - 2] = pos[m - 1];
+            pos[m - 1] = temp;
+        }
+        int rank = 0;
+        int used = 0;
+        for (int i = 0; i < m; i++) {
+            rank = rank * (size - i) + pos[i] - Integer.bitCount(used & ((1 << pos[i]) - 1));
+            used |= 1 << pos[i];
+        }
+        return rank;
+    }
+
+    private static void unrank(int rank, int size, int[] pos) {
+        int m = pos.length;
+        for (int i = m - 1; i >= 0; i--) {
+            pos[i] = rank % (size - i);
+            rank /= size - i;
+        }
+        int used = 0;
+        for (int i = 0; i < m; i++) {
+            int c = 0;
+            for (int r = pos[i]; r > 0 || (used & (1 << c)) != 0; c++) {
+                if ((used & (1 << c)) == 0) {
+                    r--;
+                }
+            }
+            pos[i] = c;
+            used |= 1 << c;
+        }
+    }
+
+    /**
+     * @param board - An array that represent the puzzle state
+     * @return the sum over the groups of the cost of the group (the real cost, rounded down)
+     */
+    public int value(int[] board) {
+        int[] where = new int[maxTile + 1];
+        int[] holes = new int[emptyBlocks];
+        int e = 0;
+        for (int i = 0; i < size; i++) {
+            if (board[i] == 0) {
+                holes[e++] = i;
+            } else {
+                where[board[i]] = i;
+            }
+        }
+        int sum = 0;
+        for (int g = 0; g < groups.length; g++) {
+            int[] pos = new int[groups[g].length + emptyBlocks];
+            for (int i = 0; i < groups[g].length; i++) {
+                pos[i] = where[groups[g][i]];
+            }
+            System.arraycopy(holes, 0, pos, groups[g].length, emptyBlocks);
+            sum += tables[g][rank(pos, size, emptyBlocks)];
+        }
+        return sum / 2;
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * End to end performance regression runner: runs algorithms over the instances of a folder (see
+ * InstanceGenerator) and writes, for every instance and algorithm, the number of States generated, the cost,
+ * the run time and the peak heap to a CSV file and a JSON file. If a baseline CSV file (of an earlier run)
+ * is given, every result is compared with it, and the run fails (exit code 1) if a cost changed, or if the
+ * number of States, the time or the peak heap grew more than the thresholds.
+ * Usage: java PerfRunner [folder] [results name] [baseline csv] [algorithms, comma separated]
+ *        [heuristic] [seconds per run]
+ *
+ * @author Itai Lashover
+ */
+public class PerfRunner {
+
+    private static final double NODES_THRESHOLD = 0.10;    // the allowed growth of the number of States
+    private static final double TIME_THRESHOLD = 0.25;
+    private static final double HEAP_THRESHOLD = 0.25;
+    private static final long MIN_MILLIS = 50;             // shorter runs are too noisy to compare their time
+    private static final String HEADER = "instance,optimal,algorithm,status,nodes,cost,millis,peakHeapMB";
+    private final String heuristic;
+    private final int seconds;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+
+    /**
+     * Constructor for PerfRunner
+     * @param heuristic - The heuristic function (as in the arguments of Ex1)
+     * @param seconds   - The time limit of every run
+     */
+    public PerfRunner(String heuristic, int seconds) {
+        this.heuristic = heuristic;
+        this.seconds = seconds;
+    }
+
+    public static void main(String[] args) throws IOException {
+        File folder = new File(args.length > 0 ? args[0] : "instances");
+        String name = args.length > 1 ? args[1] : "perf";
+        File baseline = args.length > 2 && !args[2].equals("-") ? new File(args[2]) : null;
+        String[] algos = (args.length > 3 ? args[3] : "BFS,DFID,A*,IDA*,DFBnB").split(",");
+        PerfRunner perf = new PerfRunner(args.length > 4 ? args[4] : "manhattan",
+                args.length > 5 ? Integer.parseInt(args[5]) : 30);
+        ArrayList<String[]> results;
+        try {
+            results = perf.run(folder, algos);
+        } finally {
+            perf.runner.shutdownNow();
+        }
+        write(results, new File(name + ".csv"), new File(name + ".json"));
+        if (baseline != null) {
+            ArrayList<String> regressions = compare(read(baseline), results);
+            for (String r : regressions) {
+                System.out.println(r);
+            }
+            System.out.println(regressions.size() + " regressions against " + baseline);
+            System.exit(regressions.isEmpty() ? 0 : 1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Runs every algorithm on every instance of the folder
+     * @return a row (as in HEADER) for every run
+     */
+    public ArrayList<String[]> run(File folder, String[] algos) throws IOException {
+        File[] files = folder.listFiles((dir, f) -> f.endsWith(".txt"));
+        if (files == null) {
+            throw new IOException("no folder " + folder);
+        }
+        Arrays.sort(files);
+        ArrayList<String[]> results = new ArrayList<>();
+        for (File f : files) {
+            String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+            String instance = f.getName().substring(0, f.getName().length() - 4);
+            String optimal = instance.contains("-c") ? instance.replaceAll(".*-c0*(\\d+)-.*", "$1") : "";
+            for (String algo : algos) {
+                String[] row = run(text.substring(text.indexOf('\n')), algo);
+                results.add(new String[]{instance, optimal, algo, row[0], row[1], row[2], row[3], row[4]});
+                System.out.println(String.join(",", results.get(results.size() - 1)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param instance - The instance in the format of the input file, without its first line (the algorithm)
+     * @return the status ("ok", "no path", "timeout" or "error"), the number of States, the cost,
+     *         the time (ms) and the peak heap (MB) of the run
+     */
+    private String[] run(String instance, String algoName) {
+        Ex1 input = new Ex1(new Scanner(algoName + instance));
+        input.heuristic = Ex1.fixHeuristicName(heuristic);
+        input.read();
+        Algo algo = new Algo(input.selectedAlgo, false, false);
+        algo.setHeuristic(input.heuristic);
+        System.gc();
+        resetPeakHeap();
+        long startTime = System.nanoTime();
+        Future<String> answer = runner.submit(() -> algo.solve(input.startState, input.goalState));
+        String status;
+        try {
+            status = answer.get(seconds, TimeUnit.SECONDS).startsWith("no path") ? "no path" : "ok";
+        } catch (TimeoutException e) {
+            algo.cancel();
+            status = "timeout";
+        } catch (ExecutionException e) {
+            status = "error";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = "error";
+        }
+        long millis = (System.nanoTime() - startTime) / 1_000_000;
+        if (status.equals("timeout")) {
+            try {
+                answer.get();   // waits for the cancelled run to stop
+            } catch (Exception e) {
+                // cancelled
+            }
+        }
+        boolean ok = status.equals("ok");
+        return new String[]{status, ok ? String.valueOf(algo.numOfStates) : "", ok ? String.valueOf(algo.cost) : "",
+                String.valueOf(millis), String.valueOf(peakHeap() >> 20)};
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the sum of the peak usages of the heap memory pools since the last reset
+     */
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Writes the results as CSV and as JSON (an array of objects with the fields of HEADER)
+     */
+    static void write(ArrayList<String[]> results, File csv, File json) throws IOException {
+        String[] fields = HEADER.split(",");
+        try (Writer c = new FileWriter(csv); Writer j = new FileWriter(json)) {
+            c.write(HEADER + "\n");
+            j.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                String[] row = results.get(i);
+                c.write(String.join(",", row) + "\n");
+                StringBuilder o = new StringBuilder("  {");
+                for (int k = 0; k < fields.length; k++) {
+                    boolean number = k != 0 && k != 2 && k != 3 && !row[k].isEmpty();
+                    o.append(k > 0 ? ", " : "").append('"').append(fields[k]).append("\": ")
+                            .append(number ? row[k] : row[k].isEmpty() && k > 3 ? "null" : "\"" + row[k] + "\"");
+                }
+                j.write(o.append(i + 1 < results.size() ? "},\n" : "}\n").toString());
+            }
+            j.write("]\n");
+        }
+    }
+
+    /**
+     * @return the rows of a results CSV file
+     */
+    static ArrayList<String[]> read(File csv) throws IOException {
+        ArrayList<String[]> rows = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(csv))) {
+            String line = r.readLine();     // the header
+            while ((line = r.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    rows.add(line.split(",", -1));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return a line for every result that is worse than the same instance and algorithm in the baseline
+     */
+    static ArrayList<String> compare(ArrayList<String[]> baseline, ArrayList<String[]> results) {
+        HashMap<String, String[]> base = new HashMap<>();
+        for (String[] row : baseline) {
+            base.put(row[0] + "," + row[2], row);
+        }
+        ArrayList<String> regressions = new ArrayList<>();
+        for (String[] row : results) {
+            String key = row[0] + "," + row[2];
+            String[] b = base.get(key);
+            if (b == null) {
+                continue;   // a new instance or algorithm
+            }
+            if (b[3].equals("ok") && !row[3].equals("ok")) {
+                regressions.add(key + ": " + row[3] + " (was ok)");
+                continue;
+            }
+            if (!b[3].equals("ok") || !row[3].equals("ok")) {
+                continue;
+            }
+            if (!b[5].equals(row[5])) {
+                regressions.add(key + ": cost " + row[5] + " (was " + b[5] + ")");
+            }
+            grew(regressions, key, "nodes", Long.parseLong(b[4]), Long.parseLong(row[4]), NODES_THRESHOLD, 0);
+            grew(regressions, key, "millis", Long.parseLong(b[6]), Long.parseLong(row[6]), TIME_THRESHOLD, MIN_MILLIS);
+            grew(regressions, key, "peakHeapMB", Long.parseLong(b[7]), Long.parseLong(row[7]), HEAP_THRESHOLD, 16);
+        }
+        return regressions;
+    }
+
+    /**
+     * Adds a regression if the value grew more than the threshold (and is over the minimum)
+     */
+    private static void grew(ArrayList<String> regressions, String key, String field, long was, long now,
+                             double threshold, long min) {
+        if (now > min && now > was * (1 + threshold)) {
+            regressions.add(key + ": " + field + " " + now + " (was " + was + ")");
+        }
+    }
+}
@@ -1,6 +1,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * PuzzleState defines a state for the nth-puzzle problem. The board is always
@@ -12,7 +13,7 @@ import java.util.Collections;
  */
 public class PuzzleState implements State, Comparable<State> {
 
-    private static int uniqueKey = 0;
+    private static final AtomicInteger uniqueKey = new AtomicInteger();   // States are made by concurrent searches
     private final int id;
     private final int[] curBoard;
     private final int puzzleSize;
@@ -22,9 +23,16 @@ public class PuzzleState implements State, Comparable<State> {
     private final int cost;
     private Boolean out = false;
     private PuzzleState pre = null;
-    private String path = "";
+    private String path = "";     // the path before the root State, the rest is built from the previous States
     private String lastStep = "";
     private final PuzzleStateAlgo psa;
+    private final long dirSteps;    // the tile steps of the Manhattan distance by direction (see PuzzleStateAlgo)
+    private final int rowConflicts;
+    private final int colConflicts;
+    private final long hash;
+    private final long rowKey;      // the WD states of the walking distance heuristic
+    private final long colKey;
+    private PackedBoard packed = null;
     public int heuristic = -1;
 
     /**
@@ -36,32 +44,67 @@ public class PuzzleState implements State, Comparable<State> {
      * @param cost        - The total cost to reach this state
      */
     public PuzzleState(int[] board, int n, int m, int emptyBlocks, int cost, int[] goal) {
-        this.id = uniqueKey++;
+        this(board, n, m, emptyBlocks, cost, goal, PuzzleStateAlgo.Heuristic.MANHATTAN);
+    }
+
+    /**
+     * Constructor for PuzzleState
+     * @param board       - An array that represent the puzzle state
+     * @param n           - Number of rows in the Puzzle
+     * @param m           - Number of column in the Puzzle
+     * @param emptyBlocks - Number of empty blocks in the Puzzle
+     * @param cost        - The total cost to reach this state
+     * @param heuristic   - The heuristic function of this State and of all the States generated from it
+     */
+    public PuzzleState(int[] board, int n, int m, int emptyBlocks, int cost, int[] goal,
+                       PuzzleStateAlgo.Heuristic heuristic) {
+        this.id = uniqueKey.getAndIncrement();
         this.numOfRows = n;
         this.numOfCols = m;
         this.puzzleSize = n*m;
         this.numOfEmptyBlocks = emptyBlocks;
         this.curBoard = board;
         this.cost = cost;
-        this.psa = new PuzzleStateAlgo(this,goal);
+        this.psa = new PuzzleStateAlgo(this,goal,heuristic);
+        this.dirSteps = psa.dirSteps();
+        this.rowConflicts = psa.linearConflictHor();
+        this.colConflicts = psa.linearConflictVer();
+        this.hash = Zobrist.hash(board);
+        this.rowKey = psa.rowKey(board);
+        this.colKey = psa.colKey(board);
     }
 
     /**
      * Copy constructor for PuzzleState
-     * @param pre   - PuzzleState
-     * @param board - An array that represent the puzzle state
-     * @param cost  - The total cost to reach this state
-     */
-    private PuzzleState(PuzzleState pre, int[] board, int cost){
-        this.id = uniqueKey++;
+     * @param pre            - PuzzleState
+     * @param board          - An array that represent the puzzle state
+     * @param cost           - The total cost to reach this state
+     * @param dirSteps       - The packed tile steps of the Manhattan distance of this state
+     * @param rowConflicts   - The number of linear conflicts in the rows of this state
+     * @param colConflicts   - The number of linear conflicts in the columns of this state
+     * @param hash           - The Zobrist hash of the board
+     * @param rowKey         - The WD state of the rows (walking distance heuristic)
+     * @param colKey         - The WD state of the columns (walking distance heuristic)
+     * @param step           - A string that represents the step from the previous State to this State
+     */
+    private PuzzleState(PuzzleState pre, int[] board, int cost, long dirSteps, int rowConflicts, int colConflicts,
+                        long hash, long rowKey, long colKey, String step){
+        this.id = uniqueKey.getAndIncrement();
         this.numOfRows = pre.numOfRows;
         this.numOfCols = pre.numOfCols;
         this.puzzleSize = pre.puzzleSize;
         this.numOfEmptyBlocks = pre.numOfEmptyBlocks;
         this.curBoard = board;
         this.cost = cost;
-        this.psa = new PuzzleStateAlgo(this,pre.psa.getGoal());
+        this.psa = new PuzzleStateAlgo(this,pre.psa);
+        this.dirSteps = dirSteps;
+        this.rowConflicts = rowConflicts;
+        this.colConflicts = colConflicts;
+        this.hash = hash;
+        this.rowKey = rowKey;
+        this.colKey = colKey;
         this.pre = pre;
+        this.lastStep = step;
     }
 
     /**
@@ -364,9 +407,15 @@ public class PuzzleState implements State, Comparable<State> {
         int temp = cpy[d1];
         cpy[d1] = curBoard[d2];
         cpy[d2] = temp;
-        PuzzleState newState = new PuzzleState(this ,cpy ,cost);
+        long steps = psa.dirStepsAfter(dirSteps, temp, d1, d2);
+        int lc = psa.conflictsAround(cpy, d1, d2) - psa.conflictsAround(curBoard, d1, d2);
+        boolean horizontal = d1 / numOfCols == d2 / numOfCols;  // changes only the conflicts in the columns
+        long h = hash ^ Zobrist.swap(curBoard, d1, d2);
+        long rk = psa.rowKeyAfter(rowKey, temp, d1, d2);
+        long ck = psa.colKeyAfter(colKey, temp, d1, d2);
+        PuzzleState newState = new PuzzleState(this ,cpy ,cost, steps, horizontal ? rowConflicts : rowConflicts + lc,
+                horizontal ? colConflicts + lc : colConflicts, h, rk, ck, step);
         s.add(newState);
-        newState.setStringPath(this.path, step);
     }
 
     /**
@@ -387,9 +436,13 @@ public class PuzzleState implements State, Comparable<State> {
         cpy[e1] = curBoard[e2];
         cpy[d2] = temp1;
         cpy[e2] = temp2;
-        PuzzleState newState = new PuzzleState(this ,cpy ,cost);
+        long steps = psa.dirStepsAfter(psa.dirStepsAfter(dirSteps, temp1, d1, d2), temp2, e1, e2);
+        int lc = psa.conflictsAround(cpy, d1, d2) - psa.conflictsAround(curBoard, d1, d2);
+        boolean horizontal = d1 / numOfCols == d2 / numOfCols;
+        long h = hash ^ Zobrist.swap(curBoard, d1, d2) ^ Zobrist.swap(curBoard, e1, e2);
+        PuzzleState newState = new PuzzleState(this ,cpy ,cost, steps, horizontal ? rowConflicts : rowConflicts + lc,
+                horizontal ? colConflicts + lc : colConflicts, h, 0, 0, step);    // no WD with two blanks
         s.add(newState);
-        newState.setStringPath(this.path, step);
     }
 
     /**
@@ -420,7 +473,11 @@ public class PuzzleState implements State, Comparable<State> {
         return !lastStep.equals(reStep);
     }
 
-    private String reverseStep(String step){
+    /**
+     * @param step - A string that represents a step (for example "5L" or "3&4U")
+     * @return the step that cancels it (for example "5R" or "3&4D")
+     */
+    public static String reverseStep(String step){
         char direction = step.charAt(step.length()-1);
         char update;
         switch (direction){
@@ -432,6 +489,25 @@ public class PuzzleState implements State, Comparable<State> {
         }
         return step.replace(direction, update);
     }
+    /**
+     * @param path - A string that represents a path of steps from one board to another (as in getStringPath)
+     * @return the path back, from the last board to the first one
+     */
+    public static String reversePath(String path){
+        if(path.isEmpty()){
+            return path;
+        }
+        String[] steps = path.split("-");
+        StringBuilder back = new StringBuilder();
+        for(int i = steps.length - 1 ; i >= 0 ; i--){
+            back.append(reverseStep(steps[i]));
+            if(i != 0){
+                back.append("-");
+            }
+        }
+        return back.toString();
+    }
+
     /**
      * Builds an ArrayList of states from the start State to the current State.
      * @return an ArrayList of States
@@ -449,26 +525,25 @@ public class PuzzleState implements State, Comparable<State> {
     }
 
     /**
-     * Setter for path filed
-     * @param pre     - A string that represents the path to the previous state
-     * @param current - A string that represents the path of getting from the previous State to the current State
-     */
-    private void setStringPath(String pre, String current){
-        lastStep = current;
-        if(pre.length() == 0) {
-            this.path += current;
-        }
-        else{
-            this.path += pre + "-" + current;
-        }
-    }
-
-    /**
-     * Getter for path filed
+     * Builds the path from the steps of the previous States, so a State does not have to hold
+     * a copy of the whole path (that grows with the depth of the State)
      * @return a string that represents the path to this State from the start State
      */
     public String getStringPath(){
-        return path;
+        ArrayList<String> steps = new ArrayList<>();
+        PuzzleState curState = this;
+        while(curState.getPre() != null){
+            steps.add(curState.lastStep);
+            curState = curState.getPre();
+        }
+        StringBuilder path = new StringBuilder(curState.path);
+        for(int i = steps.size() - 1 ; i >= 0 ; i--){
+            if(path.length() != 0){
+                path.append("-");
+            }
+            path.append(steps.get(i));
+        }
+        return path.toString();
     }
 
 
@@ -492,12 +567,81 @@ public class PuzzleState implements State, Comparable<State> {
         return cost;
     }
 
+    /**
+     * @return the Zobrist hash of the current board
+     */
+    public long getHash(){
+        return hash;
+    }
+
+    /**
+     * @return the current board packed into longs, created on the first call.
+     *         Used as the key of the duplicate detection tables
+     */
+    public PackedBoard getPacked(){
+        if(packed == null){
+            packed = PackedBoard.of(curBoard, hash);
+        }
+        return packed;
+    }
+
+    /**
+     * Used by the backward side of bidirectional searches
+     * @param target - A board
+     * @return a new start State (with cost 0) with the board of this State, whose heuristic function
+     *         estimates the distance to the target board instead of the goal board
+     */
+    public PuzzleState toward(int[] target){
+        return new PuzzleState(curBoard, numOfRows, numOfCols, numOfEmptyBlocks, 0, target, psa.getHeuristic());
+    }
+
+    /**
+     * Used by the lazy evaluation of the heuristic function (see Algo.LazyAStar)
+     * @return the cost to reach the current State with the Manhattan distance and linear conflict, that costs
+     *         nothing to compute. It is a lower bound of the cost with the MANHATTAN and MAX heuristic functions,
+     *         but not with the walking distance or the pattern database alone (that may be lower), so the f value
+     *         of a State is the larger of the two
+     */
+    public int getCheapCost(){
+        return getGn() + getCheapHn();
+    }
+
+    /**
+     * @return the Manhattan distance and linear conflict of the current State (with two empty blocks,
+     *         priced by the cost of the moves)
+     */
+    private int getCheapHn(){
+        // updated from the previous State instead of scanning the whole board
+        if(numOfEmptyBlocks == 1){
+            return PuzzleStateAlgo.manhattanSteps(dirSteps) * 5 + (rowConflicts + colConflicts) * 2 * 5;
+        }
+        return PuzzleStateAlgo.twoBlanksBound(dirSteps, rowConflicts, colConflicts);
+    }
+
     /**
      * @return the heuristic function that estimates the distance of the current State from the goal State
      */
     private int getHn(){
         if(heuristic == -1){
-            heuristic = psa.manhattanDistance();
+            // the expensive heuristic functions are shared by all the States of the same board (see HeuristicCache)
+            HeuristicCache shared = psa.hasWalkingDistance() || psa.hasPatternDatabase() ? HeuristicCache.shared() : null;
+            long key = hash ^ psa.getGoalKey();
+            if(shared != null && (heuristic = shared.get(key)) != -1){
+                return heuristic;
+            }
+            heuristic = getCheapHn();
+            boolean max = psa.getHeuristic() == PuzzleStateAlgo.Heuristic.MAX;
+            if(psa.hasWalkingDistance()){
+                int wd = psa.walkingDistance(rowKey, colKey) * 5;
+                heuristic = max ? Math.max(heuristic, wd) : wd;
+            }
+            if(psa.hasPatternDatabase()){
+                int pdb = psa.patternDatabase();
+                heuristic = max ? Math.max(heuristic, pdb) : pdb;
+            }
+            if(shared != null){
+                shared.put(key, heuristic);
+            }
         }
         return heuristic;
     }
@@ -576,7 +720,7 @@ public class PuzzleState implements State, Comparable<State> {
      */
     @Override
     public boolean equals(State s) {
-        return Arrays.equals(this.curBoard, s.getCurBoard());
+        return this.hash == s.getHash() && Arrays.equals(this.curBoard, s.getCurBoard());
     }
 
     /**
@@ -5,8 +5,24 @@
  * @author Itai Lashover
  */
 public class PuzzleStateAlgo {
+
+    /**
+     * The heuristic functions that can be used by the States:
+     * MANHATTAN        - Manhattan distance + Linear Conflict (with two empty blocks, priced by the cost of the moves)
+     * WALKING_DISTANCE - Walking distance (single empty block boards up to 4x4, MANHATTAN otherwise)
+     * PATTERN_DATABASE - Additive pattern database (boards up to 16 cells, MANHATTAN otherwise)
+     * MAX              - The maximum of all of them
+     */
+    public enum Heuristic { MANHATTAN, WALKING_DISTANCE, PATTERN_DATABASE, MAX }
+
     private final PuzzleState currentState;
     private final int[] goalState;
+    private final int[] goalIndex;
+    private final Heuristic heuristic;
+    private final WalkingDistance rowWD;
+    private final WalkingDistance colWD;
+    private final PatternDatabase pdb;
+    private final long goalKey;
 
     /**
      * PuzzleStateAlgo Constructor
@@ -14,20 +30,197 @@ public class PuzzleStateAlgo {
      * @param goal - goal State
      */
     public PuzzleStateAlgo(PuzzleState cur, int[] goal){
+        this(cur, goal, Heuristic.MANHATTAN);
+    }
+
+    /**
+     * PuzzleStateAlgo Constructor
+     * @param cur       - current State
+     * @param goal      - goal State
+     * @param heuristic - The heuristic function to use
+     */
+    public PuzzleStateAlgo(PuzzleState cur, int[] goal, Heuristic heuristic){
         this.currentState = cur;
         this.goalState = goal;
+        this.goalIndex = goalIndex(goal);
+        this.heuristic = heuristic;
+        this.goalKey = HeuristicCache.goalKey(goal, cur.getNumOfRows(), cur.getNumOfCols(),
+                cur.getNumOfEmptyBlocks(), heuristic);
+        WalkingDistance rows = null, cols = null;
+        if((heuristic == Heuristic.WALKING_DISTANCE || heuristic == Heuristic.MAX) && cur.getNumOfEmptyBlocks() == 1){
+            int blank = 0;
+            while(goal[blank] != 0){
+                blank++;
+            }
+            rows = WalkingDistance.get(cur.getNumOfRows(), cur.getNumOfCols(), blank / cur.getNumOfCols());
+            cols = WalkingDistance.get(cur.getNumOfCols(), cur.getNumOfRows(), blank % cur.getNumOfCols());
+        }
+        if(rows == null || cols == null){
+            rows = cols = null;
+        }
+        this.rowWD = rows;
+        this.colWD = cols;
+        if(heuristic == Heuristic.PATTERN_DATABASE || heuristic == Heuristic.MAX){
+            this.pdb = PatternDatabase.get(cur.getNumOfRows(), cur.getNumOfCols(), goal);
+        }
+        else{
+            this.pdb = null;
+        }
     }
 
     /**
-     * @return the Manhattan distance + Linear Conflict of the current state from the goal State
+     * Constructor for the successors of a State, shares the goal tables of the previous State
+     * instead of building them again
+     * @param cur - current State
+     * @param pre - the PuzzleStateAlgo of the previous State
      */
-    public int manhattanDistance() {
-        if(currentState.getNumOfEmptyBlocks() == 1){
-            return (manhattan(5) + (linearConflict()*2*5));
+    PuzzleStateAlgo(PuzzleState cur, PuzzleStateAlgo pre){
+        this.currentState = cur;
+        this.goalState = pre.goalState;
+        this.goalIndex = pre.goalIndex;
+        this.heuristic = pre.heuristic;
+        this.rowWD = pre.rowWD;
+        this.colWD = pre.colWD;
+        this.pdb = pre.pdb;
+        this.goalKey = pre.goalKey;
+    }
+
+    /**
+     * @return the heuristic function of the States
+     */
+    public Heuristic getHeuristic(){
+        return heuristic;
+    }
+
+    /**
+     * @return the key of the goal board, its dimensions and the heuristic function in the heuristic cache
+     *         (see HeuristicCache)
+     */
+    public long getGoalKey(){
+        return goalKey;
+    }
+
+    /**
+     * @return true if the walking distance tables are available for this board
+     */
+    public boolean hasWalkingDistance(){
+        return rowWD != null;
+    }
+
+    /**
+     * @param board - A board
+     * @return the WD state of the rows of the board (0 if there are no walking distance tables)
+     */
+    public long rowKey(int[] board){
+        long key = 0;
+        if(rowWD != null){
+            for(int k = 0 ; k < board.length ; k++){
+                if(board[k] != 0){
+                    key = rowWD.add(key, k / currentState.getNumOfCols(), goalRow(board[k]));
+                }
+            }
         }
-        else{
-            return (manhattan(3) + (linearConflict()*2*3));
+        return key;
+    }
+
+    /**
+     * @param board - A board
+     * @return the WD state of the columns of the board (0 if there are no walking distance tables)
+     */
+    public long colKey(int[] board){
+        long key = 0;
+        if(colWD != null){
+            for(int k = 0 ; k < board.length ; k++){
+                if(board[k] != 0){
+                    key = colWD.add(key, k % currentState.getNumOfCols(), goalCol(board[k]));
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Updates the WD state of the rows when a single tile moves (only a vertical move changes it)
+     * @param key  - The WD state of the rows before the move
+     * @param tile - The tile that moves
+     * @param from - The index of the tile before the move
+     * @param to   - The index of the tile after the move
+     * @return the WD state of the rows after the move
+     */
+    public long rowKeyAfter(long key, int tile, int from, int to){
+        int cols = currentState.getNumOfCols();
+        if(rowWD == null || from / cols == to / cols){
+            return key;
         }
+        return rowWD.move(key, from / cols, to / cols, goalRow(tile));
+    }
+
+    /**
+     * Updates the WD state of the columns when a single tile moves (only a horizontal move changes it)
+     * @param key  - The WD state of the columns before the move
+     * @param tile - The tile that moves
+     * @param from - The index of the tile before the move
+     * @param to   - The index of the tile after the move
+     * @return the WD state of the columns after the move
+     */
+    public long colKeyAfter(long key, int tile, int from, int to){
+        int cols = currentState.getNumOfCols();
+        if(colWD == null || from % cols == to % cols){
+            return key;
+        }
+        return colWD.move(key, from % cols, to % cols, goalCol(tile));
+    }
+
+    /**
+     * @param rowKey - The WD state of the rows
+     * @param colKey - The WD state of the columns
+     * @return the walking distance (number of moves), must be called only if there are walking distance tables
+     */
+    public int walkingDistance(long rowKey, long colKey){
+        return rowWD.distance(rowKey) + colWD.distance(colKey);
+    }
+
+    /**
+     * @return true if the pattern database is available for this board
+     */
+    public boolean hasPatternDatabase(){
+        return pdb != null;
+    }
+
+    /**
+     * @return the value of the pattern database for the current State, must be called only if there is one
+     */
+    public int patternDatabase(){
+        return pdb.value(currentState.getCurBoard());
+    }
+
+    /**
+     * A lower bound on the cost to the goal with two empty blocks, that prices every direction by the cost of
+     * the moves: a tile step costs 5 alone, or 6 (horizontal) / 7 (vertical) together with a step of another
+     * tile in the same direction. So the steps that the tiles need in a direction cost at least 6 (or 7) for
+     * every two of them, and 5 for the odd one. In addition every tile step costs at least 3 (horizontal) or
+     * 3.5 (vertical), so every linear conflict, that makes a tile leave its line and come back, adds at
+     * least 2 such steps across its line. The two bounds are taken separately for each axis.
+     * @param dirSteps     - The tile steps needed in every direction (see dirSteps)
+     * @param rowConflicts - The number of linear conflicts in the rows
+     * @param colConflicts - The number of linear conflicts in the columns
+     * @return the lower bound on the cost
+     */
+    public static int twoBlanksBound(long dirSteps, int rowConflicts, int colConflicts){
+        int left = dirSteps(dirSteps, 0), right = dirSteps(dirSteps, 1);
+        int up = dirSteps(dirSteps, 2), down = dirSteps(dirSteps, 3);
+        int hor = Math.max(pairs(left, 6) + pairs(right, 6), 3 * (left + right) + 6 * colConflicts);
+        int ver2 = Math.max(2 * (pairs(up, 7) + pairs(down, 7)), 7 * (up + down) + 14 * rowConflicts);
+        return hor + ver2 / 2;
+    }
+
+    /**
+     * @param steps    - A number of tile steps in one direction
+     * @param pairCost - The cost of a pair move in this direction
+     * @return the cost of the steps when as many of them as possible are done in pairs
+     */
+    private static int pairs(int steps, int pairCost){
+        return (steps / 2) * pairCost + (steps % 2) * 5;
     }
 
     /**
@@ -48,19 +241,120 @@ public class PuzzleStateAlgo {
         return manhattan;
     }
 
+    /**
+     * Manhattan distance of many boards at once. The distance of every tile from every cell is taken
+     * from a tile-position table that is built once for the whole batch (the row of the blank is all zeros),
+     * so scoring a board is a branch free sum of table lookups.
+     * @param boards    - The boards to evaluate, all of them with numOfRows*numOfCols cells
+     * @param numOfRows - Number of rows in the Puzzle
+     * @param numOfCols - Number of column in the Puzzle
+     * @param goal      - The goal board
+     * @param c         - The cost of moving each individual tile
+     * @return an array with the Manhattan distance of each board, in the order of the boards
+     */
+    public static int[] manhattan(int[][] boards, int numOfRows, int numOfCols, int[] goal, double c){
+        int[] index = goalIndex(goal);
+        int size = numOfRows * numOfCols;
+        int[] dist = new int[index.length * size];
+        for(int t = 1 ; t < index.length ; t++){
+            for(int k = 0 ; k < size ; k++){
+                dist[t*size+k] = Math.abs(k/numOfCols - index[t]/numOfCols) + Math.abs(k%numOfCols - index[t]%numOfCols);
+            }
+        }
+        int[] ans = new int[boards.length];
+        for(int b = 0 ; b < boards.length ; b++){
+            int[] board = boards[b];
+            int steps = 0;
+            for(int k = 0 ; k < size ; k++){
+                steps += dist[board[k]*size+k];
+            }
+            ans[b] = (int)(steps * c);
+        }
+        return ans;
+    }
+
+    /**
+     * @param goal - The goal board
+     * @return a table that holds for each tile its index in the goal board (the blank is mapped to 0)
+     */
+    private static int[] goalIndex(int[] goal){
+        int max = 0;
+        for (int t : goal) {
+            max = Math.max(max, t);
+        }
+        int[] index = new int[max + 1];
+        for(int i = 0 ; i < goal.length ; i++){
+            if(goal[i] != 0) {
+                index[goal[i]] = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The tile steps of the Manhattan distance of the current state from the goal State, by direction:
+     * left, right, up and down, 16 bits each (from the lowest), packed into a long
+     * @return the packed tile steps
+     */
+    public long dirSteps(){
+        int[] board = currentState.getCurBoard();
+        long steps = 0;
+        for(int k = 0 ; k < board.length ; k++){
+            if(board[k] != 0){
+                steps += dirSteps(board[k], k);
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Updates the packed tile steps when a single tile moves, so the distance of a successor
+     * is updated in O(1) instead of computing it again
+     * @param steps - The packed tile steps before the move
+     * @param tile  - The tile that moves
+     * @param from  - The index of the tile before the move
+     * @param to    - The index of the tile after the move
+     * @return the packed tile steps after the move
+     */
+    public long dirStepsAfter(long steps, int tile, int from, int to){
+        return steps - dirSteps(tile, from) + dirSteps(tile, to);
+    }
+
+    /**
+     * @param steps - Packed tile steps
+     * @return the total number of tile steps (the Manhattan distance in moves)
+     */
+    public static int manhattanSteps(long steps){
+        return dirSteps(steps, 0) + dirSteps(steps, 1) + dirSteps(steps, 2) + dirSteps(steps, 3);
+    }
+
+    /**
+     * @param steps - Packed tile steps
+     * @param dir   - 0 left, 1 right, 2 up, 3 down
+     * @return the number of tile steps in the direction
+     */
+    private static int dirSteps(long steps, int dir){
+        return (int) (steps >>> (16 * dir)) & 0xFFFF;
+    }
+
+    /**
+     * @param tile - A tile (not the blank)
+     * @param cell - An index in the board
+     * @return the packed steps between the cell and the place of the tile in the goal State
+     */
+    private long dirSteps(int tile, int cell){
+        int cols = currentState.getNumOfCols();
+        int dx = goalIndex[tile] % cols - cell % cols;
+        int dy = goalIndex[tile] / cols - cell / cols;
+        return (dx < 0 ? -dx : (long) dx << 16) | (dy < 0 ? (long) -dy << 32 : (long) dy << 48);
+    }
+
     /**
      * @param value - The value to look for
      * @return the row where a certain value in the goal State
      */
     private int goalRow(int value){
-        for(int i = 0 ; i < currentState.getNumOfRows() ; i++) {
-            for(int j = 0 ; j < currentState.getNumOfCols() ; j++){
-                if(goalState[i*currentState.getNumOfCols()+j] == value ) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return goalIndex[value] / currentState.getNumOfCols();
     }
 
     /**
@@ -68,14 +362,7 @@ public class PuzzleStateAlgo {
      * @return the column where a certain value in the goal State
      */
     private int goalCol(int value){
-        for(int i = 0 ; i < currentState.getNumOfRows() ; i++) {
-            for(int j = 0 ; j < currentState.getNumOfCols() ; j++){
-                if(goalState[i*currentState.getNumOfCols()+j] == value ) {
-                    return j;
-                }
-            }
-        }
-        return -1;
+        return goalIndex[value] % currentState.getNumOfCols();
     }
 
     /**
@@ -85,45 +372,77 @@ public class PuzzleStateAlgo {
         return goalState;
     }
 
+    /**
+     * A move changes the linear conflicts only in the lines it crosses: the two rows of a vertical move
+     * or the two columns of a horizontal move (the order of the tiles in the other lines stays the same).
+     * Used to update the linear conflicts of a successor without counting the whole board again.
+     * @param board - The board before or after the move
+     * @param from  - The index of the (first) moving tile before the move
+     * @param to    - The index of the (first) moving tile after the move
+     * @return the number of linear conflicts in the lines of the board that the move crosses
+     */
+    public int conflictsAround(int[] board, int from, int to){
+        int cols = currentState.getNumOfCols();
+        if(from / cols == to / cols){
+            return colConflicts(board, from % cols) + colConflicts(board, to % cols);
+        }
+        return rowConflicts(board, from / cols) + rowConflicts(board, to / cols);
+    }
+
     /**
      * Two tiles are in linear conflict if both tiles are in their target rows or columns, and in the same setting of
      * the manhattan heuristic, they must pass over each other in order to reach their final goal position.
      * Since there is no possible way for tiles to actually slide over each other.
      * If such a conflict arises, then one of the tiles would need to move out of the aforementioned row or column,
      * and back in again, adding 2 moves to the sum of their manhattan distances.
-     * @return the number of linear conflicts in the current State
+     * @return the number of horizontal linear conflicts (in the rows) in the current State
+     */
+    public int linearConflictHor(){
+        int numOfConflicts = 0;
+        for(int i=0 ; i< currentState.getNumOfRows() ; i++){
+            numOfConflicts += rowConflicts(currentState.getCurBoard(), i);
+        }
+        return numOfConflicts;
+    }
+
+    /**
+     * @return the number of vertical linear conflicts (in the columns) in the current State
      */
-    private int linearConflict(){
-        return linearConflictHor() + linearConflictVer();
+    public int linearConflictVer(){
+        int numOfConflicts = 0;
+        for(int i=0 ; i< currentState.getNumOfCols() ; i++){
+            numOfConflicts += colConflicts(currentState.getCurBoard(), i);
+        }
+        return numOfConflicts;
     }
 
     /**
-     * @return the number of horizontal linear conflicts in the current State
+     * @param board - A board
+     * @param i     - A row of the board
+     * @return the number of linear conflicts in the row
      */
-    private int linearConflictHor(){
+    private int rowConflicts(int[] board, int i){
         int numOfConflicts = 0;
-        for(int i=0 ; i< currentState.getNumOfRows() ; i++){
-            for(int j=0 ; j< currentState.getNumOfCols() ; j++){
-                int val = currentState.getCurBoard()[i*currentState.getNumOfCols()+j];
-                if(val == 0){
-                    continue;
-                }
-                int goalRow = goalRow(val);
-                int goalCol = goalCol(val);
-                if(goalRow == i){
-                    for(int k=j+1 ; k< currentState.getNumOfCols() ; k++){
-                        int val2 = currentState.getCurBoard()[i*currentState.getNumOfCols()+k];
-                        if(val2 == 0){
-                            continue;
-                        }
-                        int goalRow2 = goalRow(val2);
-                        int goalCol2 = goalCol(val2);
-                        if(goalRow2 == i){
-                            if(goalCol > goalCol2){
-                                numOfConflicts++;
-                                j = k-1;
-                                break;
-                            }
+        for(int j=0 ; j< currentState.getNumOfCols() ; j++){
+            int val = board[i*currentState.getNumOfCols()+j];
+            if(val == 0){
+                continue;
+            }
+            int goalRow = goalRow(val);
+            int goalCol = goalCol(val);
+            if(goalRow == i){
+                for(int k=j+1 ; k< currentState.getNumOfCols() ; k++){
+                    int val2 = board[i*currentState.getNumOfCols()+k];
+                    if(val2 == 0){
+                        continue;
+                    }
+                    int goalRow2 = goalRow(val2);
+                    int goalCol2 = goalCol(val2);
+                    if(goalRow2 == i){
+                        if(goalCol > goalCol2){
+                            numOfConflicts++;
+                            j = k-1;
+                            break;
                         }
                     }
                 }
@@ -133,32 +452,32 @@ public class PuzzleStateAlgo {
     }
 
     /**
-     * @return the number of vertical linear conflicts in the current State
+     * @param board - A board
+     * @param i     - A column of the board
+     * @return the number of linear conflicts in the column
      */
-    private int linearConflictVer(){
+    private int colConflicts(int[] board, int i){
         int numOfConflicts = 0;
-        for(int i=0 ; i< currentState.getNumOfCols() ; i++){
-            for(int j=0 ; j< currentState.getNumOfRows() ; j++){
-                int val = currentState.getCurBoard()[j*currentState.getNumOfCols()+i];
-                if(val == 0){
-                    continue;
-                }
-                int goalRow = goalRow(val);
-                int goalCol = goalCol(val);
-                if(goalCol == i){
-                    for(int k=j+1 ; k< currentState.getNumOfRows() ; k++){
-                        int val2 = currentState.getCurBoard()[k*currentState.getNumOfCols()+i];
-                        if(val2 == 0){
-                            continue;
-                        }
-                        int goalRow2 = goalRow(val2);
-                        int goalCol2 = goalCol(val2);
-                        if(goalCol2 == i){
-                            if(goalRow > goalRow2){
-                                numOfConflicts++;
-                                j=k-1;
-                                break;
-                            }
+        for(int j=0 ; j< currentState.getNumOfRows() ; j++){
+            int val = board[j*currentState.getNumOfCols()+i];
+            if(val == 0){
+                continue;
+            }
+            int goalRow = goalRow(val);
+            int goalCol = goalCol(val);
+            if(goalCol == i){
+                for(int k=j+1 ; k< currentState.getNumOfRows() ; k++){
+                    int val2 = board[k*currentState.getNumOfCols()+i];
+                    if(val2 == 0){
+                        continue;
+                    }
+                    int goalRow2 = goalRow(val2);
+                    int goalCol2 = goalCol(val2);
+                    if(goalCol2 == i){
+                        if(goalRow > goalRow2){
+                            numOfConflicts++;
+                            j=k-1;
+                            break;
                         }
                     }
                 }
@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * The result of a backward uniform cost search from a goal board, up to a radius (a cost).
+ * It holds every board whose cost to the goal is at most the radius, with its exact cost and its path to
+ * the goal, so it can be reused by all the searches toward the same goal board: a start board inside the
+ * radius is answered immediately, and every other board costs more than the radius (a perimeter heuristic).
+ * The caches are kept by (goal board, radius) and evicted from the least recently used one when their
+ * estimated size is over the memory cap.
+ *
+ * @author Itai Lashover
+ */
+public final class ReverseDistanceCache {
+
+    private static long memoryCap = 256L << 20;
+    private static long usedMemory = 0;
+    private static final LinkedHashMap<String, ReverseDistanceCache> caches = new LinkedHashMap<>(16, 0.75f, true);
+    private final int radius;
+    private final Hashtable<PackedBoard, State> states = new Hashtable<>();  // the States of the backward search
+    private final long bytes;
+
+    private ReverseDistanceCache(State goal, int radius) {
+        this.radius = radius;
+        Comparator<State> stateComparator = Comparator.comparingInt((State s) -> s.getCost(false))
+                .thenComparingInt(State::getId);
+        PriorityQueue<State> q = new PriorityQueue<>(stateComparator);
+        Hashtable<PackedBoard, State> open = new Hashtable<>();
+        q.add(goal);
+        open.put(goal.getPacked(), goal);
+        while (!q.isEmpty() && q.peek().getCost(false) <= radius) {
+            State current = q.poll();
+            if (open.get(current.getPacked()) != current) {
+                continue;   // a cheaper copy of this board was found after this one was added
+            }
+            states.put(current.getPacked(), current);
+            ArrayList<State> suc = current.genSuccessors();
+            for (State next : suc) {
+                State known = open.get(next.getPacked());
+                if (known == null || next.getCost(false) < known.getCost(false)) {
+                    open.put(next.getPacked(), next);
+                    q.add(next);
+                }
+            }
+        }
+        // a State, its board, its packed board and the table entry
+        this.bytes = (long) states.size() * (200 + 5L * goal.getCurBoard().length);
+    }
+
+    /**
+     * @param goal   - goal State
+     * @param radius - The maximal cost of the boards in the cache
+     * @return the cache of the goal board and the radius, built if it is not in the memory
+     */
+    public static synchronized ReverseDistanceCache get(State goal, int radius) {
+        String key = goal.getPacked() + ":" + radius;
+        ReverseDistanceCache cache = caches.get(key);
+        if (cache == null) {
+            cache = new ReverseDistanceCache(goal.toward(goal.getCurBoard()), radius);
+            caches.put(key, cache);
+            usedMemory += cache.bytes;
+            evict(key);
+        }
+        return cache;
+    }
+
+    /**
+     * Removes the least recently used caches (except the one in use) until the memory is under the cap
+     */
+    private static void evict(String keep) {
+        Iterator<Map.Entry<String, ReverseDistanceCache>> it = caches.entrySet().iterator();
+        while (usedMemory > memoryCap && it.hasNext()) {
+            Map.Entry<String, ReverseDistanceCache> eldest = it.next();
+            if (!eldest.getKey().equals(keep)) {
+                usedMemory -= eldest.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Setter for the memory cap of all the caches together
+     * @param bytes - The maximal estimated size of the caches in bytes
+     */
+    public static synchronized void setMemoryCap(long bytes) {
+        memoryCap = bytes;
+        evict(null);
+    }
+
+    /**
+     * @return the maximal cost of the boards in the cache, every board that is not in the cache costs more
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @param s - A State
+     * @return the exact cost from the board of the State to the goal board, or -1 if it is not in the cache
+     */
+    public int cost(State s) {
+        State back = states.get(s.getPacked());
+        return back == null ? -1 : back.getCost(false);
+    }
+
+    /**
+     * @param s - A State whose board is in the cache
+     * @return The order of operations from the board of the State to the goal board as a string
+     */
+    public String pathToGoal(State s) {
+        return PuzzleState.reversePath(states.get(s.getPacked()).getStringPath());
+    }
+}
@@ -0,0 +1,298 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persistent cache of solved instances, so an instance that was solved in a previous run is answered
+ * without running any search. An entry is keyed by (algorithm, the parameters of the algorithms, heuristic
+ * function, cost model, start board, goal board) and holds the path, the cost, the number of States generated
+ * and the details of the run.
+ * The entries are appended to a data file, and an index file (an open addressing hash table of
+ * 64 bit key hashes to data offsets) is memory mapped, so opening the cache does not parse anything.
+ * Every slot also holds the time (a counter) it was last used: when the index is 3/4 full, the least recently
+ * used half of the entries is dropped and the files are rewritten. The recently used entries are also
+ * kept in an in-memory LRU front.
+ *
+ * @author Itai Lashover
+ */
+public final class SolutionCache {
+
+    /**
+     * A cached solution
+     */
+    public static final class Entry {
+        public final String path;
+        public final int cost;
+        public final int numOfStates;
+        public final String details;    // null if the run had no details
+
+        public Entry(String path, int cost, int numOfStates, String details) {
+            this.path = path;
+            this.cost = cost;
+            this.numOfStates = numOfStates;
+            this.details = details;
+        }
+    }
+
+    public static final String COST_MODEL = "5,6,7";    // single move, horizontal pair, vertical pair
+    private static final int MAGIC = 0x50435332;   // the files of older formats are reset
+    private static final int HEADER = 32;
+    private static final int SLOT = 24;                 // hash, data offset, last use
+    private static final int FRONT_SIZE = 1024;
+    private final File folder;
+    private final int capacity;
+    private MappedByteBuffer index;
+    private RandomAccessFile data;
+    private long tick;
+    private int count;
+    private final LinkedHashMap<String, Integer> frontSlots = new LinkedHashMap<>();  // the index slot of the entries
+    private final LinkedHashMap<String, Entry> front = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > FRONT_SIZE) {
+                frontSlots.remove(eldest.getKey());
+            }
+            return size() > FRONT_SIZE;
+        }
+    };
+
+    /**
+     * Opens the cache in the folder (creates it if it does not exist)
+     * @param folder   - The folder of the index and data files
+     * @param capacity - The number of slots in the index, the cache keeps up to 3/4 of it
+     * @throws IOException if the files can't be opened
+     */
+    public SolutionCache(File folder, int capacity) throws IOException {
+        this.folder = folder;
+        this.capacity = capacity;
+        folder.mkdirs();
+        open();
+    }
+
+    private void open() throws IOException {
+        File indexFile = new File(folder, "index.bin");
+        boolean fresh = !indexFile.exists();
+        try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+            index = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) capacity * SLOT);
+        }
+        data = new RandomAccessFile(new File(folder, "data.bin"), "rw");
+        if (fresh || index.getInt(0) != MAGIC || index.getInt(4) != capacity) {
+            for (int i = 0; i < HEADER + capacity * SLOT; i += 8) {
+                index.putLong(i, 0);
+            }
+            index.putInt(0, MAGIC);
+            index.putInt(4, capacity);
+            data.setLength(0);
+        }
+        count = index.getInt(8);
+        tick = index.getLong(16);
+    }
+
+    /**
+     * @param parameters - The parameters that change the answers of the algorithm (like the weight of WA*)
+     * @return the key of an instance
+     */
+    public static String key(String algo, String parameters, PuzzleStateAlgo.Heuristic heuristic, State start,
+                             State goal) {
+        return algo + ":" + parameters + ":" + heuristic + ":" + COST_MODEL + ":" + start.getPacked() + ":"
+                + goal.getPacked();
+    }
+
+    /**
+     * @param key - The key of an instance
+     * @return the cached solution of the instance, or null if it is not in the cache
+     */
+    public synchronized Entry get(String key) {
+        Entry e = front.get(key);
+        if (e != null) {
+            touch(frontSlots.get(key));
+            return e;
+        }
+        long h = hash(key);
+        for (int i = home(h), n = 0; n < capacity; i = (i + 1) % capacity, n++) {
+            long slotHash = index.getLong(slot(i));
+            if (slotHash == 0) {
+                return null;
+            }
+            if (slotHash == h) {
+                try {
+                    e = read(index.getLong(slot(i) + 8), key);
+                } catch (IOException ex) {
+                    return null;
+                }
+                if (e != null) {
+                    touch(i);
+                    frontSlots.put(key, i);
+                    front.put(key, e);
+                    return e;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a solution to the cache
+     * @param key - The key of the instance
+     * @param e   - The solution
+     */
+    public synchronized void put(String key, Entry e) {
+        if (get(key) != null) {
+            return;
+        }
+        try {
+            if (count + 1 > capacity * 3 / 4) {
+                evict();
+            }
+            long offset = append(key, e);
+            int i = insert(hash(key), offset, ++tick);
+            index.putInt(8, ++count);
+            index.putLong(16, tick);
+            frontSlots.put(key, i);
+            front.put(key, e);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * @return the slot of the new entry
+     */
+    private int insert(long h, long offset, long used) {
+        int i = home(h);
+        while (index.getLong(slot(i)) != 0) {
+            i = (i + 1) % capacity;
+        }
+        index.putLong(slot(i), h);
+        index.putLong(slot(i) + 8, offset);
+        index.putLong(slot(i) + 16, used);
+        return i;
+    }
+
+    /**
+     * Marks the entry in the slot as the most recently used one
+     */
+    private void touch(int i) {
+        index.putLong(slot(i) + 16, ++tick);
+        index.putLong(16, tick);
+    }
+
+    /**
+     * Keeps only the most recently used half of the entries, and rewrites the files
+     */
+    private void evict() throws IOException {
+        ArrayList<long[]> slots = new ArrayList<>();
+        for (int i = 0; i < capacity; i++) {
+            if (index.getLong(slot(i)) != 0) {
+                slots.add(new long[]{index.getLong(slot(i)), index.getLong(slot(i) + 8), index.getLong(slot(i) + 16)});
+            }
+        }
+        slots.sort((a, b) -> Long.compare(b[2], a[2]));
+        ArrayList<byte[]> records = new ArrayList<>();
+        ArrayList<long[]> kept = new ArrayList<>(slots.subList(0, Math.min(slots.size(), capacity / 2)));
+        for (long[] s : kept) {
+            records.add(readRecord(s[1]));
+        }
+        data.setLength(0);
+        for (int i = 0; i < HEADER + capacity * SLOT; i += 8) {
+            index.putLong(i, 0);
+        }
+        index.putInt(0, MAGIC);
+        index.putInt(4, capacity);
+        for (int i = 0; i < kept.size(); i++) {
+            long offset = data.length();
+            data.seek(offset);
+            data.write(records.get(i));
+            insert(kept.get(i)[0], offset, kept.get(i)[2]);
+        }
+        count = kept.size();
+        index.putInt(8, count);
+        front.clear();
+        frontSlots.clear();
+    }
+
+    private long append(String key, Entry e) throws IOException {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] p = e.path.getBytes(StandardCharsets.UTF_8);
+        byte[] d = e.details == null ? new byte[0] : e.details.getBytes(StandardCharsets.UTF_8);
+        long offset = data.length();
+        data.seek(offset);
+        data.writeInt(20 + k.length + p.length + d.length);   // the size of the rest of the record
+        data.writeInt(k.length);
+        data.write(k);
+        data.writeInt(p.length);
+        data.write(p);
+        data.writeInt(e.cost);
+        data.writeInt(e.numOfStates);
+        data.writeInt(e.details == null ? -1 : d.length);
+        data.write(d);
+        return offset;
+    }
+
+    private byte[] readRecord(long offset) throws IOException {
+        data.seek(offset);
+        byte[] record = new byte[4 + data.readInt()];
+        data.seek(offset);
+        data.readFully(record);
+        return record;
+    }
+
+    /**
+     * @return the entry at the offset if its key is the given key, null otherwise
+     */
+    private Entry read(long offset, String key) throws IOException {
+        data.seek(offset + 4);
+        byte[] k = new byte[data.readInt()];
+        data.readFully(k);
+        if (!key.equals(new String(k, StandardCharsets.UTF_8))) {
+            return null;
+        }
+        byte[] p = new byte[data.readInt()];
+        data.readFully(p);
+        int cost = data.readInt();
+        int numOfStates = data.readInt();
+        int detailsLength = data.readInt();
+        byte[] d = new byte[Math.max(0, detailsLength)];
+        data.readFully(d);
+        return new Entry(new String(p, StandardCharsets.UTF_8), cost, numOfStates,
+                detailsLength < 0 ? null : new String(d, StandardCharsets.UTF_8));
+    }
+
+    private int slot(int i) {
+        return HEADER + i * SLOT;
+    }
+
+    private int home(long h) {
+        return (int) Long.remainderUnsigned(h, capacity);
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key (never 0, that marks an empty slot)
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Writes the index to the disk and closes the data file
+     */
+    public synchronized void close() {
+        index.force();
+        try {
+            data.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Complete solution table for small boards (up to 9 cells, like 3x3 and 2x4, with one or two empty blocks).
+ * Every board is ranked into a dense index (lexicographic rank of the permutation of the tiles, where the
+ * first empty block is ranked before the second one), and a retrograde Dijkstra from the goal board stores
+ * for every rank the exact cost to the goal and the best move (the index of the successor, in the order of
+ * genSuccessors, that is on an optimal path).
+ * So solving an instance is a lookup per move of the solution.
+ * The tables are saved to the 'tables' folder and loaded from there in the next runs.
+ *
+ * @author Itai Lashover
+ */
+public final class SolutionTable {
+
+    private static final int MAX_CELLS = 9;
+    private static final int UNREACHABLE = 0xFF;
+    private static final String folder = "tables";
+    private static final Map<String, SolutionTable> cache = new HashMap<>();
+    private final int numOfRows;
+    private final int numOfCols;
+    private final int emptyBlocks;
+    private final int[] goal;
+    private final int[] values;     // the tiles of the goal board, sorted
+    private final byte[] costs;
+    private final byte[] moves;
+
+    private SolutionTable(int numOfRows, int numOfCols, int emptyBlocks, int[] goal, byte[] costs, byte[] moves) {
+        this.numOfRows = numOfRows;
+        this.numOfCols = numOfCols;
+        this.emptyBlocks = emptyBlocks;
+        this.goal = goal;
+        this.values = goal.clone();
+        Arrays.sort(values);
+        this.costs = costs;
+        this.moves = moves;
+    }
+
+    /**
+     * Loads the table of the goal board from the disk, or builds it (and saves it) if there is no such file
+     * @param n           - Number of rows in the Puzzle
+     * @param m           - Number of column in the Puzzle
+     * @param emptyBlocks - Number of empty blocks in the Puzzle
+     * @param goal        - The goal board
+     * @return the table, or null if the board is too large
+     */
+    public static synchronized SolutionTable get(int n, int m, int emptyBlocks, int[] goal) {
+        if (n * m > MAX_CELLS) {
+            return null;
+        }
+        String name = n + "x" + m + "_" + Arrays.toString(goal).replaceAll("[\\[\\] ]", "").replace(',', '-');
+        if (!cache.containsKey(name)) {
+            File file = new File(folder, name + ".bin");
+            SolutionTable table = load(file, n, m, emptyBlocks, goal);
+            if (table == null) {
+                table = build(n, m, emptyBlocks, goal);
+                table.save(file);
+            }
+            cache.put(name, table);
+        }
+        return cache.get(name);
+    }
+
+    static int factorial(int n) {
+        int f = 1;
+        for (int i = 2; i <= n; i++) {
+            f *= i;
+        }
+        return f;
+    }
+
+    /**
+     * @param board - An array that represent the puzzle state
+     * @return the rank of the board, or -1 if its tiles are not the tiles of the goal board
+     */
+    public int rank(int[] board) {
+        return rank(board, values);
+    }
+
+    /**
+     * @param board  - An array that represent the puzzle state
+     * @param values - The tiles of the board, sorted
+     * @return the rank of the board, or -1 if its tiles are not the given tiles
+     */
+    static int rank(int[] board, int[] values) {
+        int size = board.length;
+        int[] code = new int[size];
+        int zeros = 0;
+        for (int i = 0; i < size; i++) {
+            code[i] = board[i] == 0 ? zeros++ : Arrays.binarySearch(values, board[i]);
+            if (code[i] < 0 || values[code[i]] != board[i]) {
+                return -1;
+            }
+        }
+        int rank = 0;
+        for (int i = 0; i < size; i++) {
+            int smaller = 0;
+            for (int j = i + 1; j < size; j++) {
+                if (code[j] < code[i]) {
+                    smaller++;
+                }
+            }
+            rank = rank * (size - i) + smaller;
+        }
+        return rank;
+    }
+
+    private int[] unrank(int rank) {
+        return unrank(rank, values);
+    }
+
+    /**
+     * @param rank   - The rank of a board
+     * @param values - The tiles of the board, sorted
+     * @return the board of the rank
+     */
+    static int[] unrank(int rank, int[] values) {
+        int size = values.length;
+        int[] digits = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            digits[i] = rank % (size - i);
+            rank /= size - i;
+        }
+        ArrayList<Integer> left = new ArrayList<>();
+        for (int v : values) {
+            left.add(v);
+        }
+        int[] board = new int[size];
+        for (int i = 0; i < size; i++) {
+            board[i] = left.remove(digits[i]);
+        }
+        return board;
+    }
+
+    private PuzzleState root(int[] board) {
+        return new PuzzleState(board, numOfRows, numOfCols, emptyBlocks, 0, goal);
+    }
+
+    /**
+     * Retrograde Dijkstra from the goal board (every move can be undone by a move with the same cost,
+     * so the successors of a board are also its predecessors), and then the best move of every board
+     */
+    private static SolutionTable build(int n, int m, int emptyBlocks, int[] goal) {
+        int numOfRanks = factorial(n * m);
+        byte[] costs = new byte[numOfRanks];
+        byte[] moves = new byte[numOfRanks];
+        Arrays.fill(costs, (byte) UNREACHABLE);
+        SolutionTable table = new SolutionTable(n, m, emptyBlocks, goal.clone(), costs, moves);
+        int[] dist = new int[numOfRanks];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        PriorityQueue<Long> q = new PriorityQueue<>();
+        int g = table.rank(goal);
+        dist[g] = 0;
+        q.add((long) g);
+        while (!q.isEmpty()) {
+            long entry = q.poll();
+            int r = (int) entry;
+            int d = (int) (entry >>> 32);
+            if (d != dist[r]) {
+                continue;
+            }
+            for (State next : table.root(table.unrank(r)).genSuccessors()) {
+                int nr = table.rank(next.getCurBoard());
+                int nd = d + next.getCost(false);
+                if (nd < dist[nr]) {
+                    dist[nr] = nd;
+                    q.add((long) nd << 32 | nr);
+                }
+            }
+        }
+        for (int r = 0; r < numOfRanks; r++) {
+            if (dist[r] == Integer.MAX_VALUE) {
+                continue;
+            }
+            if (dist[r] >= UNREACHABLE) {
+                throw new IllegalStateException("cost " + dist[r] + " does not fit in the table");
+            }
+            costs[r] = (byte) dist[r];
+            ArrayList<State> suc = table.root(table.unrank(r)).genSuccessors();
+            for (int i = 0; i < suc.size(); i++) {
+                if (dist[table.rank(suc.get(i).getCurBoard())] + suc.get(i).getCost(false) == dist[r]) {
+                    moves[r] = (byte) i;
+                    break;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static SolutionTable load(File file, int n, int m, int emptyBlocks, int[] goal) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int numOfRanks = in.readInt();
+            if (numOfRanks != factorial(n * m)) {
+                return null;
+            }
+            byte[] costs = new byte[numOfRanks];
+            byte[] moves = new byte[numOfRanks];
+            in.readFully(costs);
+            in.readFully(moves);
+            return new SolutionTable(n, m, emptyBlocks, goal.clone(), costs, moves);
+        } catch (IOException e) {
+            return null;    // a damaged file, the table will be built again
+        }
+    }
+
+    private void save(File file) {
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(costs.length);
+            out.write(costs);
+            out.write(moves);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param board - An array that represent the puzzle state
+     * @return the exact cost from the board to the goal board, or -1 if there is no path
+     */
+    public int cost(int[] board) {
+        int r = rank(board);
+        if (r < 0 || (costs[r] & 0xFF) == UNREACHABLE) {
+            return -1;
+        }
+        return costs[r] & 0xFF;
+    }
+
+    /**
+     * Follows the best moves from the board to the goal board
+     * @param board - An array that represent the puzzle state
+     * @return The order of operations from the board to the goal board as a string,
+     *         or null if there is no path
+     */
+    public String solve(int[] board) {
+        if (cost(board) < 0) {
+            return null;
+        }
+        StringBuilder path = new StringBuilder();
+        while (cost(board) != 0) {
+            State next = root(board).genSuccessors().get(moves[rank(board)]);
+            if (path.length() != 0) {
+                path.append("-");
+            }
+            path.append(next.getStringPath());
+            board = next.getCurBoard();
+        }
+        return path.toString();
+    }
+}
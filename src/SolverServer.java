@@ -0,0 +1,167 @@
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+
+/**
+ * Server mode: a resident process that solves the instances it receives, so the start of the JVM and the
+ * building of the heuristic tables (walking distance, pattern databases, solution tables) are paid once.
+ * The instances are read from the standard input, from a loopback TCP port or from a Unix domain socket,
+ * one instance per line: the lines of the input file joined with '|', for example
+ * "A*|no time|no open|3x3|1,2,3|4,_,5|7,8,6|Goal state:|1,2,3|4,5,6|7,8,_".
+ * Every instance is solved on its own thread (a virtual thread when the JVM has them), and its answer is
+ * written as soon as it is solved, so the answers may come in a different order than the instances:
+ * an answer is the number of the instance in its connection (from 0) followed by the lines of the output
+ * file, all joined with '|' (or "error" and a message if the instance can't be read or solved).
+ * The open list is never printed in this mode, it would be mixed with the answers.
+ *
+ * @author Itai Lashover
+ */
+public final class SolverServer {
+
+    private final PuzzleStateAlgo.Heuristic heuristic;
+    private final SolutionCache cache;
+    private final ExecutorService pool = newExecutor();
+
+    /**
+     * Constructor for SolverServer
+     * @param heuristic - The heuristic function of all the instances
+     * @param cache     - The persistent cache of solved instances, or null for no cache
+     */
+    public SolverServer(PuzzleStateAlgo.Heuristic heuristic, SolutionCache cache) {
+        this.heuristic = heuristic;
+        this.cache = cache;
+    }
+
+    /**
+     * @return an executor that runs every task on a new virtual thread, or on a pooled platform thread
+     *         if the JVM has no virtual threads (before Java 21)
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Serves the instances of the standard input until it ends
+     */
+    public void serveStdin() throws IOException {
+        serve(System.in, System.out);
+    }
+
+    /**
+     * Serves the connections to a TCP port of the loopback address, each connection on its own thread
+     * @param port - The port number
+     */
+    public void serveTcp(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            while (true) {
+                Socket socket = server.accept();
+                pool.execute(() -> {
+                    try (Socket s = socket) {
+                        serve(s.getInputStream(), s.getOutputStream());
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Serves the connections to a Unix domain socket, each connection on its own thread
+     * @param path - The path of the socket file (replaced if it exists)
+     */
+    public void serveUnix(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            while (true) {
+                SocketChannel channel = server.accept();
+                pool.execute(() -> {
+                    try (SocketChannel c = channel) {
+                        serve(Channels.newInputStream(c), Channels.newOutputStream(c));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                });
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Reads the instances of a connection and writes their answers, returns when the input has ended
+     * and all its instances are answered
+     */
+    private void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Phaser pending = new Phaser(1);
+        String line;
+        for (int n = 0; (line = reader.readLine()) != null; ) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            String request = line;
+            int id = n++;
+            pending.register();
+            pool.execute(() -> {
+                try {
+                    String answer = id + "|" + solve(request).trim().replace("\n", "|");
+                    synchronized (writer) {
+                        try {
+                            writer.write(answer + "\n");
+                            writer.flush();
+                        } catch (IOException e) {
+                            e.printStackTrace();    // the connection was closed
+                        }
+                    }
+                } finally {
+                    pending.arriveAndDeregister();  // the connection must not wait for a failed instance
+                }
+            });
+        }
+        pending.arriveAndAwaitAdvance();
+    }
+
+    /**
+     * @param request - An instance, the lines of the input file joined with '|'
+     * @return the content of the output file of the instance, or "error" and the reason if it could not be
+     *         solved (also when the search ran out of memory or stack)
+     */
+    String solve(String request) {
+        try {
+            Ex1 instance = new Ex1(new Scanner(request.replace('|', '\n')));
+            instance.heuristic = heuristic;
+            instance.read();
+            Algo algo = new Algo(instance.selectedAlgo, false, instance.withTime);
+            algo.setHeuristic(heuristic);
+            if (cache != null) {
+                algo.setCache(cache, heuristic);
+            }
+            return algo.solve(instance.startState, instance.goalState);
+        } catch (InvocationTargetException e) {
+            return "error\n" + e.getCause();   // the search failed (like OutOfMemoryError of BFS on 4x4)
+        } catch (Exception | Error e) {
+            return "error\n" + e;
+        }
+    }
+}
@@ -15,15 +15,25 @@ public interface State {
 
     int getCost(boolean withHeuristic);
 
+    int getCheapCost();
+
+    long getHash();
+
+    PackedBoard getPacked();
+
+    State toward(int[] target);
+
     void printState();
 
     boolean equals(State s);
 
     int[] getCurBoard();
 
-    void setPre(PuzzleState pre);
+    int getNumOfRows();
+
+    int getNumOfCols();
 
-    PuzzleState getPre();
+    int getNumOfEmptyBlocks();
 
     ArrayList<State> getPath();
 
@@ -0,0 +1,149 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Walking distance table for boards with a single empty block, along one axis (the rows or the columns).
+ * A WD state only remembers, for every line of the board, how many of its tiles belong to each goal line,
+ * and a move of the blank to the next line moves one tile between the two lines.
+ * The table holds the minimal number of such moves from every WD state to the goal (built by BFS),
+ * and the sum of the row table and the column table is an admissible estimate of the number of moves
+ * that is never lower than the Manhattan distance.
+ * A WD state is packed into a long, 'bits' bits for each (line, goal line) count, so a move is
+ * updated in O(1) by subtracting and adding a unit.
+ * The tables are built once per (number of lines, line length, goal line of the blank) and cached.
+ *
+ * @author Itai Lashover
+ */
+public final class WalkingDistance {
+
+    private static final int MAX_STATES = 4_000_000;
+    private static final Map<String, WalkingDistance> cache = new HashMap<>();
+    private final int lines;
+    private final int bits;
+    private final long[] keys;      // sorted
+    private final byte[] dist;
+
+    private WalkingDistance(int lines, int bits, long[] keys, byte[] dist) {
+        this.lines = lines;
+        this.bits = bits;
+        this.keys = keys;
+        this.dist = dist;
+    }
+
+    /**
+     * @param lines      - The number of lines along the axis (rows for the row table)
+     * @param lineLength - The number of cells in each line
+     * @param blankLine  - The line of the blank in the goal board
+     * @return the table of this axis, or null if it is too large to build (roughly, beyond 4x4)
+     */
+    public static synchronized WalkingDistance get(int lines, int lineLength, int blankLine) {
+        String k = lines + "x" + lineLength + ":" + blankLine;
+        if (!cache.containsKey(k)) {
+            cache.put(k, build(lines, lineLength, blankLine));
+        }
+        return cache.get(k);
+    }
+
+    /**
+     * BFS from the goal WD state over all the reachable WD states
+     */
+    private static WalkingDistance build(int lines, int lineLength, int blankLine) {
+        int bits = 32 - Integer.numberOfLeadingZeros(lineLength);
+        if (lines * lines * bits > 63) {
+            return null;
+        }
+        long start = 0;
+        for (int i = 0; i < lines; i++) {
+            start += (long) (i == blankLine ? lineLength - 1 : lineLength) << ((i * lines + i) * bits);
+        }
+        HashMap<Long, Integer> visited = new HashMap<>();
+        ArrayDeque<Long> q = new ArrayDeque<>();
+        visited.put(start, 0);
+        q.add(start);
+        long mask = (1L << bits) - 1;
+        while (!q.isEmpty()) {
+            long key = q.poll();
+            int d = visited.get(key);
+            int blank = 0;
+            for (int i = 0; i < lines; i++) {
+                int sum = 0;
+                for (int g = 0; g < lines; g++) {
+                    sum += (key >>> ((i * lines + g) * bits)) & mask;
+                }
+                if (sum < lineLength) {
+                    blank = i;
+                }
+            }
+            for (int from = blank - 1; from <= blank + 1; from += 2) {
+                if (from < 0 || from >= lines) {
+                    continue;
+                }
+                for (int g = 0; g < lines; g++) {
+                    if (((key >>> ((from * lines + g) * bits)) & mask) == 0) {
+                        continue;
+                    }
+                    long next = key - (1L << ((from * lines + g) * bits)) + (1L << ((blank * lines + g) * bits));
+                    if (!visited.containsKey(next)) {
+                        if (visited.size() >= MAX_STATES) {
+                            return null;
+                        }
+                        visited.put(next, d + 1);
+                        q.add(next);
+                    }
+                }
+            }
+        }
+        long[] keys = new long[visited.size()];
+        int i = 0;
+        for (long key : visited.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        byte[] dist = new byte[keys.length];
+        for (i = 0; i < keys.length; i++) {
+            dist[i] = (byte) (int) visited.get(keys[i]);
+        }
+        return new WalkingDistance(lines, bits, keys, dist);
+    }
+
+    /**
+     * Adds a tile to a WD state
+     * @param key      - The WD state
+     * @param line     - The line of the tile
+     * @param goalLine - The line of the tile in the goal board
+     * @return the new WD state
+     */
+    public long add(long key, int line, int goalLine) {
+        return key + (1L << ((line * lines + goalLine) * bits));
+    }
+
+    /**
+     * Moves a tile between two lines
+     * @param key      - The WD state
+     * @param from     - The line of the tile before the move
+     * @param to       - The line of the tile after the move
+     * @param goalLine - The line of the tile in the goal board
+     * @return the new WD state
+     */
+    public long move(long key, int from, int to, int goalLine) {
+        return key - (1L << ((from * lines + goalLine) * bits)) + (1L << ((to * lines + goalLine) * bits));
+    }
+
+    /**
+     * @param key - A WD state
+     * @return the minimal number of moves along this axis from the WD state to the goal
+     */
+    public int distance(long key) {
+        int i = Arrays.binarySearch(keys, key);
+        return i < 0 ? 0 : dist[i] & 0xFF;
+    }
+
+    /**
+     * @return the number of WD states in the table
+     */
+    public int size() {
+        return keys.length;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Zobrist hashing of puzzle boards. Every (tile, cell) pair has a fixed random 64 bit key and the hash
+ * of a board is the XOR of the keys of all its tiles, so a move changes the hash by XOR-ing out the
+ * old (tile, cell) pairs and XOR-ing in the new ones.
+ * The keys are derived from the pair itself (and not drawn from a Random), so the same board always gets
+ * the same hash, no matter which State or search created it.
+ *
+ * @author Itai Lashover
+ */
+public final class Zobrist {
+
+    private Zobrist() {
+    }
+
+    /**
+     * @param tile - A tile (0 is the blank)
+     * @param cell - An index in the board
+     * @return the random key of the tile in that cell
+     */
+    public static long key(int tile, int cell) {
+        long z = ((long) tile << 32 | cell) + 0x9E3779B97F4A7C15L;   // SplitMix64
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param board - An array that represent the puzzle state
+     * @return the hash of the whole board
+     */
+    public static long hash(int[] board) {
+        long h = 0;
+        for (int i = 0; i < board.length; i++) {
+            h ^= key(board[i], i);
+        }
+        return h;
+    }
+
+    /**
+     * The change in the hash when the tiles in two cells are swapped
+     * @param board - The board before the swap
+     * @param c1    - An index in the board
+     * @param c2    - An index in the board
+     * @return the value to XOR into the hash of the board
+     */
+    public static long swap(int[] board, int c1, int c2) {
+        return key(board[c1], c1) ^ key(board[c2], c2) ^ key(board[c1], c2) ^ key(board[c2], c1);
+    }
+}